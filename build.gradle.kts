@@ -44,6 +44,41 @@ dependencies {
     testRuntime("org.slf4j:slf4j-simple:$slf4jApiVersion")
 }
 
+// Java 11+ classes are packaged into META-INF/versions/11 of a multi-release jar
+val java11 by sourceSets.creating {
+    java.srcDir("src/main/java11")
+    compileClasspath += sourceSets["main"].output + sourceSets["main"].compileClasspath
+}
+
+// Tests run again on top of the Java 11 classes, so the transports used there are covered too
+val java11Test by sourceSets.creating {
+    java.srcDir("src/test/java11")
+    compileClasspath = java11.output + sourceSets["test"].output + sourceSets["test"].compileClasspath
+    runtimeClasspath = output + java11.output + sourceSets["test"].runtimeClasspath
+}
+
+// Jar without META-INF/versions/11 would silently fall back to Java 8 transport, so refuse to build one
+listOf("compileJava11Java", "compileJava11TestJava").forEach {
+    tasks.getByName<JavaCompile>(it) {
+        sourceCompatibility = "11"
+        targetCompatibility = "11"
+        doFirst {
+            if (!JavaVersion.current().isJava11Compatible) {
+                throw GradleException("Building Java 11 classes requires JDK 11 or newer, but Gradle runs on ${JavaVersion.current()}")
+            }
+        }
+    }
+}
+
+val jar by tasks.getting(Jar::class) {
+    into("META-INF/versions/11") {
+        from(java11.output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
+}
+
 license {
     header = rootProject.file("etc/HEADER")
     filter.include("**/*.java")
@@ -65,6 +100,12 @@ val javadocJar by tasks.creating(Jar::class) {
 
 val shadowJar by tasks.getting(ShadowJar::class) {
     archiveClassifier.set("shaded")
+    into("META-INF/versions/11") {
+        from(java11.output)
+    }
+    manifest {
+        attributes("Multi-Release" to "true")
+    }
 
     val targetPackage = "eu.mikroskeem.picomaven.shaded"
     val relocations = listOf(
@@ -83,7 +124,16 @@ val shadowJar by tasks.getting(ShadowJar::class) {
     }
 }
 
-val test by tasks.getting(Test::class) {
+val testJava11 by tasks.creating(Test::class) {
+    description = "Runs the unit tests against Java 11 classes of the multi-release jar."
+    group = "verification"
+    testClassesDirs = java11Test.output.classesDirs + sourceSets["test"].output.classesDirs
+    classpath = java11Test.runtimeClasspath
+}
+
+tasks["check"].dependsOn(testJava11)
+
+tasks.withType<Test> {
     useJUnitPlatform()
     systemProperty("org.slf4j.simpleLogger.defaultLogLevel", "trace")
 
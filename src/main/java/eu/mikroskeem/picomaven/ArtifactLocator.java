@@ -0,0 +1,495 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.internal.DataProcessor;
+import eu.mikroskeem.picomaven.internal.SneakyThrow;
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import eu.mikroskeem.picomaven.internal.UrlUtils;
+import eu.mikroskeem.picomaven.transport.ForwardingTransportResponse;
+import eu.mikroskeem.picomaven.transport.RepositoryUnavailableException;
+import eu.mikroskeem.picomaven.transport.RetryPolicy;
+import eu.mikroskeem.picomaven.transport.RetryingTransport;
+import eu.mikroskeem.picomaven.transport.Transport;
+import eu.mikroskeem.picomaven.transport.TransportRequest;
+import eu.mikroskeem.picomaven.transport.TransportResponse;
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.model.Model;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Looks up artifacts from repositories
+ *
+ * @author Mark Vainomaa
+ */
+final class ArtifactLocator {
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactLocator.class);
+
+    private final ExecutorService executorService;
+    private final Transport transport;
+    private final RetryingTransport retryingTransport;
+    private final NegativeCache negativeCache;
+    private final RepositoryRouter router;
+    private final RepositoryStats repositoryStats;
+    private final Duration hedgeStagger;
+
+    ArtifactLocator(@NonNull ExecutorService executorService, @NonNull Transport transport,
+                    @NonNull RetryingTransport retryingTransport, @NonNull NegativeCache negativeCache,
+                    @NonNull RepositoryRouter router, @Nullable RepositoryStats repositoryStats,
+                    @Nullable Duration hedgeStagger) {
+        this.executorService = executorService;
+        this.transport = transport;
+        this.retryingTransport = retryingTransport;
+        this.negativeCache = negativeCache;
+        this.router = router;
+        this.repositoryStats = repositoryStats;
+        this.hedgeStagger = hedgeStagger;
+    }
+
+    /**
+     * Gets repositories which given dependency should be looked up from, according to configured routes
+     *
+     * @param dependency Dependency
+     * @param repositories Repositories to use if dependency is not routed anywhere, in preferred order
+     * @return Repositories to query, in order
+     */
+    @NonNull
+    List<URL> route(@NonNull Dependency dependency, @NonNull List<URL> repositories) {
+        return router.route(dependency, repositories);
+    }
+
+    /**
+     * Iterates through repositories until given fetcher succeeds to fetch the artifact. If dependency
+     * is routed to specific repositories, only those are tried. With hedged lookup enabled, repositories
+     * are probed in parallel first and the one which answered first is tried first
+     *
+     * @param dependency Dependency to look up
+     * @param ext Artifact extension
+     * @param repositories Repositories to try, in order
+     * @param fetcher Fetcher used to retrieve the artifact
+     * @param <T> Fetched value type
+     * @return Future of {@link Located} artifact, or future of {@code null} if artifact was not found
+     */
+    @NonNull
+    <T> CompletableFuture<@Nullable Located<T>> locate(@NonNull Dependency dependency, @NonNull String ext,
+                                                       @NonNull List<URL> repositories, @NonNull Fetcher<T> fetcher) {
+        List<URL> candidates = router.route(dependency, repositories);
+        if (hedgeStagger == null || candidates.size() < 2 || dependency.getVersion().endsWith("-SNAPSHOT")) {
+            return locate(dependency, ext, candidates.iterator(), fetcher);
+        }
+
+        return probe(dependency, ext, candidates).thenCompose(winner -> {
+            if (winner == null) {
+                // Nobody had it at the direct URL, fall back to going through repositories one by one
+                return locate(dependency, ext, candidates.iterator(), fetcher);
+            }
+
+            List<URL> ordered = new ArrayList<>(candidates);
+            ordered.removeIf(repository -> repository.toExternalForm().equals(winner.toExternalForm()));
+            ordered.add(0, winner);
+            return locate(dependency, ext, ordered.iterator(), fetcher);
+        });
+    }
+
+    /**
+     * Fetches given URL from a repository. If reading response body fails midway, whole request is sent
+     * again according to repository's {@link RetryPolicy}, as fetchers process the body from the start
+     *
+     * @param repository Repository URL
+     * @param url URL to fetch
+     * @param fetcher Fetcher used to read the response
+     * @param <T> Fetched value type
+     * @return Future of fetched value, or future of {@code null} if URL was not found
+     */
+    @NonNull
+    <T> CompletableFuture<@Nullable T> fetch(@NonNull URL repository, @NonNull URL url, @NonNull Fetcher<T> fetcher) {
+        return fetch(new TransportRequest.Builder(url).withRepository(repository).build(), fetcher, 1);
+    }
+
+    @NonNull
+    private <T> CompletableFuture<@Nullable T> fetch(@NonNull TransportRequest request, @NonNull Fetcher<T> fetcher, int attempt) {
+        return execute(request).thenComposeAsync(response -> {
+            BodyTrackingResponse tracked = new BodyTrackingResponse(response);
+            try (TransportResponse r = tracked) {
+                if (r.isNotFound()) {
+                    return CompletableFuture.<T>completedFuture(null);
+                }
+                if (!r.isSuccess()) {
+                    throw new IOException("Unexpected response code '" + r.getStatusCode() + "' for " + request.getUrl());
+                }
+                return CompletableFuture.completedFuture(fetcher.fetch(r));
+            } catch (IOException e) {
+                Duration delay = tracked.bodyFailed ? retryingTransport.getBodyRetryDelay(request, attempt, e) : null;
+                if (delay == null) {
+                    throw new CompletionException(e);
+                }
+
+                logger.debug("Reading {} failed: {}, retrying in {} ms (attempt {})", request.getUrl(), e.toString(),
+                        delay.toMillis(), attempt + 1);
+                return TaskUtils.delay(delay).thenCompose(v -> fetch(request, fetcher, attempt + 1));
+            }
+        }, executorService);
+    }
+
+    @NonNull
+    private <T> CompletableFuture<@Nullable Located<T>> locate(@NonNull Dependency dependency, @NonNull String ext,
+                                                               @NonNull Iterator<URL> repositories, @NonNull Fetcher<T> fetcher) {
+        if (!repositories.hasNext()) {
+            // No repositories left to try
+            return CompletableFuture.completedFuture(null);
+        }
+
+        URL repository = repositories.next();
+        if (negativeCache.isMissing(repository, dependency, ext)) {
+            logger.trace("{} {} is known to be missing from repository {}", dependency, ext, repository);
+            return locate(dependency, ext, repositories, fetcher);
+        }
+
+        return tryRepository(dependency, ext, repository, fetcher).thenCompose(located -> {
+            if (repositoryStats != null) {
+                repositoryStats.recordLookup(repository, located != null);
+            }
+            if (located != null) {
+                return CompletableFuture.completedFuture(located);
+            }
+            return locate(dependency, ext, repositories, fetcher);
+        });
+    }
+
+    /**
+     * Sends {@code HEAD} requests for artifact's direct URL to given repositories, each one {@link #hedgeStagger}
+     * after the previous one, and cancels remaining requests as soon as one of them succeeds
+     *
+     * @return Future of repository which answered first, or future of {@code null} if no repository had the artifact
+     */
+    @NonNull
+    private CompletableFuture<@Nullable URL> probe(@NonNull Dependency dependency, @NonNull String ext,
+                                                   @NonNull List<URL> repositories) {
+        CompletableFuture<URL> winner = new CompletableFuture<>();
+        List<URL> probed = repositories.stream()
+                .filter(repository -> !negativeCache.isMissing(repository, dependency, ext))
+                .collect(Collectors.toList());
+        AtomicInteger remaining = new AtomicInteger(probed.size());
+        if (probed.isEmpty()) {
+            winner.complete(null);
+            return winner;
+        }
+
+        logger.trace("Probing {} repositories for {} {}", probed.size(), dependency, ext);
+        for (int i = 0; i < probed.size(); i++) {
+            URL repository = probed.get(i);
+            Runnable send = () -> {
+                if (winner.isDone()) {
+                    // Already found, or deadline exceeded
+                    return;
+                }
+
+                URL artifactUrl = UrlUtils.buildDirectArtifactUrl(repository, dependency, ext);
+                TransportRequest request = new TransportRequest.Builder(artifactUrl)
+                        .withRepository(repository)
+                        .withMethod(TransportRequest.Method.HEAD)
+                        .build();
+                CompletableFuture<TransportResponse> exchange = execute(request);
+                winner.whenComplete((w, t) -> exchange.cancel(true));
+                exchange.whenComplete((response, t) -> {
+                    if (response != null) {
+                        boolean found = response.isSuccess();
+                        closeQuietly(response);
+                        if (found && winner.complete(repository)) {
+                            logger.debug("{} {} was found first from repository {}", dependency, ext, repository);
+                        }
+                    } else if (TaskUtils.unwrapException(t) instanceof TimeoutException) {
+                        // Resolution deadline exceeded
+                        winner.completeExceptionally(t);
+                    } else if (!winner.isDone()) {
+                        logger.trace("Probing {} from repository {} failed: {}", dependency, repository, TaskUtils.unwrapException(t).toString());
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        winner.complete(null);
+                    }
+                });
+            };
+
+            Duration delay = hedgeStagger.multipliedBy(i);
+            if (delay.isZero()) {
+                send.run();
+            } else {
+                TaskUtils.delay(delay).thenRun(send);
+            }
+        }
+        return winner;
+    }
+
+    /**
+     * Executes given request, recording repository latency if adaptive repository ordering is enabled
+     */
+    @NonNull
+    private CompletableFuture<TransportResponse> execute(@NonNull TransportRequest request) {
+        if (repositoryStats == null || request.getRepository() == null) {
+            return transport.execute(request);
+        }
+
+        URL repository = request.getRepository();
+        long start = System.nanoTime();
+        CompletableFuture<TransportResponse> exchange = transport.execute(request);
+        exchange.thenAccept(response -> repositoryStats.recordLatency(repository, Duration.ofNanos(System.nanoTime() - start)));
+        return exchange;
+    }
+
+    @NonNull
+    private <T> CompletableFuture<@Nullable Located<T>> tryRepository(@NonNull Dependency dependency, @NonNull String ext,
+                                                                      @NonNull URL repository, @NonNull Fetcher<T> fetcher) {
+        logger.debug("Trying repository {} for {} {}", repository, dependency, ext);
+
+        // Do dumb check whether we can download artifact without parsing XML at all
+        if (dependency.getVersion().endsWith("-SNAPSHOT")) {
+            return tryMetadata(dependency, ext, repository, fetcher, true);
+        }
+
+        logger.trace("Attempting to download artifact without parsing XML");
+        URL artifactUrl = UrlUtils.buildDirectArtifactUrl(repository, dependency, ext);
+        return fetch(repository, artifactUrl, fetcher).handle((value, t) -> {
+            if (value != null) {
+                return CompletableFuture.completedFuture(new Located<>(repository, artifactUrl, value));
+            }
+
+            if (t != null && TaskUtils.unwrapException(t) instanceof TimeoutException) {
+                // Resolution deadline exceeded, don't try anything else
+                return TaskUtils.<Located<T>>failedFuture(t);
+            }
+            if (t != null && isConnectionFailure(TaskUtils.unwrapException(t))) {
+                logConnectionFailure(repository, TaskUtils.unwrapException(t));
+                return CompletableFuture.<Located<T>>completedFuture(null);
+            }
+
+            // Non-fatal error, continue
+            logger.trace("{} direct artifact URL {} did not work, trying to fetch XML", dependency, artifactUrl);
+            return tryMetadata(dependency, ext, repository, fetcher, t == null);
+        }).thenCompose(Function.identity());
+    }
+
+    @NonNull
+    private <T> CompletableFuture<@Nullable Located<T>> tryMetadata(@NonNull Dependency dependency, @NonNull String ext,
+                                                                    @NonNull URL repository, @NonNull Fetcher<T> fetcher,
+                                                                    boolean cacheMiss) {
+        // Try to find group metadata xml and grab artifact metadata xml URL from it
+        URL groupMetaURI = UrlUtils.buildGroupMetaURL(repository, dependency);
+        logger.trace("{} group meta URL: {}", dependency, groupMetaURI);
+        return fetch(repository, groupMetaURI, METADATA_FETCHER).thenCompose(groupMetadata -> {
+            if (groupMetadata == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            URL artifactMetaURI = UrlUtils.buildArtifactMetaURL(repository, groupMetadata, dependency);
+            logger.trace("{} artifact meta URL: {}", dependency, artifactMetaURI);
+            return fetch(repository, artifactMetaURI, METADATA_FETCHER).thenCompose(artifactMetadata -> {
+                // Figure out artifact URL and attempt to download it
+                URL artifactUrl = UrlUtils.buildArtifactURL(repository, artifactMetadata, dependency, ext);
+                return fetch(repository, artifactUrl, fetcher)
+                        .thenApply(value -> value != null ? new Located<>(repository, artifactUrl, value) : null);
+            });
+        }).handle((located, t) -> {
+            if (t != null) {
+                Exception e = TaskUtils.unwrapException(t);
+                if (e instanceof TimeoutException) {
+                    SneakyThrow.rethrow(e);
+                }
+                if (isConnectionFailure(e)) {
+                    logConnectionFailure(repository, e);
+                } else {
+                    // Skip this repository
+                    logger.debug("{} lookup from repository {} failed: {}", dependency, repository, e.getMessage());
+                }
+                return null;
+            }
+
+            if (located == null) {
+                logger.debug("{} not found in repository {}", dependency, repository);
+                if (cacheMiss) {
+                    // Every lookup got a clean 404, so artifact is surely not there
+                    negativeCache.markMissing(repository, dependency, ext);
+                }
+            }
+            return located;
+        });
+    }
+
+    private static void closeQuietly(@NonNull TransportResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            logger.trace("Failed to close response of {}", response.getRequest(), e);
+        }
+    }
+
+    private static boolean isConnectionFailure(@NonNull Exception e) {
+        return e instanceof SocketTimeoutException || e instanceof UnknownHostException
+                || e instanceof ConnectException || e instanceof RepositoryUnavailableException;
+    }
+
+    private static void logConnectionFailure(@NonNull URL repository, @NonNull Exception e) {
+        if (e instanceof RepositoryUnavailableException) {
+            // Already reported when repository went down
+            logger.debug("Skipping unavailable repository {}", repository);
+        } else {
+            logger.warn("Connection to {} failed", repository, e);
+        }
+    }
+
+    /**
+     * Fetcher which parses {@code maven-metadata.xml}
+     */
+    static final Fetcher<Metadata> METADATA_FETCHER = response -> DataProcessor.readMetadata(response.getBody());
+
+    /**
+     * Fetcher which parses POMs
+     */
+    static final Fetcher<Model> POM_FETCHER = response -> DataProcessor.readPom(response.getBody());
+
+    /**
+     * Reads artifact from a successful response
+     *
+     * @param <T> Fetched value type
+     */
+    @FunctionalInterface
+    interface Fetcher<T> {
+        /**
+         * Reads artifact from given response
+         *
+         * @param response Successful response
+         * @return Fetched value, or {@code null} if artifact was not found
+         * @throws IOException If reading fails
+         */
+        @Nullable
+        T fetch(@NonNull TransportResponse response) throws IOException;
+    }
+
+    /**
+     * Response which remembers whether reading its body failed, as opposed to processing what was read
+     */
+    private static final class BodyTrackingResponse extends ForwardingTransportResponse {
+        private volatile boolean bodyFailed = false;
+        private InputStream body = null;
+
+        private BodyTrackingResponse(@NonNull TransportResponse response) {
+            super(response);
+        }
+
+        @NonNull
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(response.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        try {
+                            return super.read();
+                        } catch (IOException e) {
+                            bodyFailed = true;
+                            throw e;
+                        }
+                    }
+
+                    @Override
+                    public int read(byte @NonNull [] b, int off, int len) throws IOException {
+                        try {
+                            return super.read(b, off, len);
+                        } catch (IOException e) {
+                            bodyFailed = true;
+                            throw e;
+                        }
+                    }
+
+                    @Override
+                    public long skip(long n) throws IOException {
+                        try {
+                            return super.skip(n);
+                        } catch (IOException e) {
+                            bodyFailed = true;
+                            throw e;
+                        }
+                    }
+                };
+            }
+            return body;
+        }
+    }
+
+    /**
+     * Artifact found from a repository
+     *
+     * @param <T> Fetched value type
+     */
+    static final class Located<T> {
+        private final URL repository;
+        private final URL url;
+        private final T value;
+
+        Located(@NonNull URL repository, @NonNull URL url, @NonNull T value) {
+            this.repository = repository;
+            this.url = url;
+            this.value = value;
+        }
+
+        @NonNull
+        URL getRepository() {
+            return repository;
+        }
+
+        @NonNull
+        URL getUrl() {
+            return url;
+        }
+
+        @NonNull
+        T getValue() {
+            return value;
+        }
+    }
+}
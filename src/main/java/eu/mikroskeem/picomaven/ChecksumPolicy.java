@@ -0,0 +1,177 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.ArtifactChecksum.ChecksumAlgo;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Policy for verifying downloaded artifacts against remote checksums. Checksums set on a
+ * {@link eu.mikroskeem.picomaven.artifact.Dependency} always take precedence over remote ones
+ *
+ * @author Mark Vainomaa
+ */
+public final class ChecksumPolicy {
+    /**
+     * Default policy: verifies both SHA-1 and MD5 checksums if repository provides them
+     */
+    public static final ChecksumPolicy DEFAULT = new Builder().build();
+
+    /**
+     * Policy which verifies only the strongest checksum repository provides, trying SHA-256, SHA-1 and MD5 in order
+     */
+    public static final ChecksumPolicy STRONGEST_AVAILABLE = new Builder()
+            .withAlgorithms(ChecksumAlgo.SHA256, ChecksumAlgo.SHA1, ChecksumAlgo.MD5)
+            .withFirstAvailableOnly(true)
+            .build();
+
+    /**
+     * Policy which never fetches remote checksums, and only verifies checksums set on dependencies
+     */
+    public static final ChecksumPolicy PINNED_ONLY = new Builder().withAlgorithms().build();
+
+    private final List<ChecksumAlgo> algorithms;
+    private final boolean firstAvailableOnly;
+    private final OnMissing onMissing;
+
+    private ChecksumPolicy(@NonNull Builder builder) {
+        this.algorithms = builder.algorithms;
+        this.firstAvailableOnly = builder.firstAvailableOnly;
+        this.onMissing = builder.onMissing;
+    }
+
+    /**
+     * Gets remote checksum algorithms, in order of preference
+     *
+     * @return List of remote checksum algorithms
+     */
+    @NonNull
+    public List<@NonNull ChecksumAlgo> getAlgorithms() {
+        return algorithms;
+    }
+
+    /**
+     * Returns whether only the first checksum available remotely is verified
+     *
+     * @return Whether only the first available checksum is verified
+     */
+    public boolean isFirstAvailableOnly() {
+        return firstAvailableOnly;
+    }
+
+    /**
+     * Gets action taken when no checksum was available to verify an artifact with
+     *
+     * @return Action on missing checksums
+     */
+    @NonNull
+    public OnMissing getOnMissing() {
+        return onMissing;
+    }
+
+    /**
+     * Actions taken when artifact could not be verified because no checksum was available
+     */
+    public enum OnMissing {
+        /**
+         * Accept the artifact silently
+         */
+        IGNORE,
+
+        /**
+         * Accept the artifact, but log a warning
+         */
+        WARN,
+
+        /**
+         * Fail the download
+         */
+        FAIL
+    }
+
+    /**
+     * {@link ChecksumPolicy} builder
+     */
+    public static final class Builder {
+        private List<ChecksumAlgo> algorithms = Collections.unmodifiableList(Arrays.asList(ChecksumAlgo.SHA1, ChecksumAlgo.MD5));
+        private boolean firstAvailableOnly = false;
+        private OnMissing onMissing = OnMissing.IGNORE;
+
+        /**
+         * Set remote checksum algorithms, in order of preference. No algorithms means that remote checksums are
+         * never fetched. Defaults to SHA-1 and MD5
+         *
+         * @param algorithms Remote checksum algorithms
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withAlgorithms(@NonNull ChecksumAlgo @NonNull ... algorithms) {
+            this.algorithms = Collections.unmodifiableList(Arrays.asList(algorithms.clone()));
+            return this;
+        }
+
+        /**
+         * Set whether only the first checksum available remotely is verified. Checksums are then fetched one
+         * by one in order of preference, until one is found. By default all checksums are fetched in parallel
+         * and verified
+         *
+         * @param firstAvailableOnly Whether only the first available checksum is verified
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withFirstAvailableOnly(boolean firstAvailableOnly) {
+            this.firstAvailableOnly = firstAvailableOnly;
+            return this;
+        }
+
+        /**
+         * Set action taken when no checksum was available to verify an artifact with. Defaults to
+         * {@link OnMissing#IGNORE}
+         *
+         * @param onMissing Action on missing checksums
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withOnMissing(@NonNull OnMissing onMissing) {
+            this.onMissing = onMissing;
+            return this;
+        }
+
+        /**
+         * Build {@link ChecksumPolicy} instance
+         *
+         * @return Instance of {@link ChecksumPolicy}
+         */
+        @NonNull
+        public ChecksumPolicy build() {
+            return new ChecksumPolicy(this);
+        }
+    }
+}
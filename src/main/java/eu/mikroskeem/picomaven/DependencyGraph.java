@@ -0,0 +1,124 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolved dependency graph, produced by {@link PicoMaven#resolve()}
+ *
+ * @author Mark Vainomaa
+ */
+public final class DependencyGraph {
+    private final List<DependencyNode> roots;
+    private final List<DependencyNode> nodes;
+    private final boolean locked;
+
+    DependencyGraph(@NonNull List<DependencyNode> roots, @NonNull List<DependencyNode> nodes) {
+        this(roots, nodes, false);
+    }
+
+    DependencyGraph(@NonNull List<DependencyNode> roots, @NonNull List<DependencyNode> nodes, boolean locked) {
+        this.roots = Collections.unmodifiableList(new ArrayList<>(roots));
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.locked = locked;
+    }
+
+    /**
+     * Gets nodes of requested dependencies, in the order they were requested
+     *
+     * @return List of root nodes
+     */
+    @NonNull
+    public List<DependencyNode> getRoots() {
+        return roots;
+    }
+
+    /**
+     * Gets all unique nodes in this graph, in breadth-first order
+     *
+     * @return List of all nodes
+     */
+    @NonNull
+    public List<DependencyNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets node for given dependency
+     *
+     * @param dependency Dependency
+     * @return {@link DependencyNode}, or {@code null} if dependency is not part of this graph
+     */
+    @Nullable
+    public DependencyNode getNode(@NonNull Dependency dependency) {
+        String key = DownloadSession.key(dependency);
+        for (DependencyNode node : nodes) {
+            if (DownloadSession.key(node.getDependency()).equals(key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets all dependency cycles which were cut while resolving this graph, see {@link DependencyNode#getCycles()}
+     *
+     * @return List of cycles
+     */
+    @NonNull
+    public List<List<Dependency>> getCycles() {
+        List<List<Dependency>> cycles = new ArrayList<>();
+        for (DependencyNode node : nodes) {
+            cycles.addAll(node.getCycles());
+        }
+        return cycles;
+    }
+
+    /**
+     * Returns whether this graph was read from the lockfile instead of being resolved
+     *
+     * @return Whether this graph was read from the lockfile
+     */
+    public boolean isLocked() {
+        return locked;
+    }
+
+    @Override
+    public String toString() {
+        return "DependencyGraph{" +
+                "roots=" + roots +
+                ", locked=" + locked +
+                ", nodes=" + nodes.size() +
+                '}';
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.artifact.Exclusion;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A node in resolved {@link DependencyGraph}
+ *
+ * @author Mark Vainomaa
+ */
+public final class DependencyNode {
+    static final String DEFAULT_TYPE = "jar";
+    static final String POM_TYPE = "pom";
+
+    private final Dependency dependency;
+    private final boolean optional;
+    private final String type;
+    private final Set<Exclusion> exclusions;
+    private final List<DependencyNode> children = new ArrayList<>();
+    private final List<DependencyNode> childrenView = Collections.unmodifiableList(children);
+    private final List<List<Dependency>> cycles = new ArrayList<>();
+    private volatile URL repository;
+
+    DependencyNode(@NonNull Dependency dependency, boolean optional) {
+        this(dependency, optional, Collections.emptySet());
+    }
+
+    DependencyNode(@NonNull Dependency dependency, boolean optional, @NonNull Collection<Exclusion> exclusions) {
+        this(dependency, optional, DEFAULT_TYPE, exclusions);
+    }
+
+    DependencyNode(@NonNull Dependency dependency, boolean optional, @NonNull String type, @NonNull Collection<Exclusion> exclusions) {
+        this.dependency = dependency;
+        this.optional = optional;
+        this.type = type;
+        this.exclusions = Collections.unmodifiableSet(new LinkedHashSet<>(exclusions));
+    }
+
+    /**
+     * Gets dependency represented by this node
+     *
+     * @return {@link Dependency}
+     */
+    @NonNull
+    public Dependency getDependency() {
+        return dependency;
+    }
+
+    /**
+     * Returns whether this dependency was optional or not
+     *
+     * @return Whether this dependency was optional or not
+     */
+    public boolean isOptional() {
+        return optional;
+    }
+
+    /**
+     * Gets dependency type, e.g {@code jar}. Dependencies of {@code pom} type have no artifact
+     * to download, only their dependencies are used
+     *
+     * @return Dependency type
+     */
+    @NonNull
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns whether this node has an artifact to download
+     *
+     * @return Whether this node has an artifact
+     */
+    public boolean hasArtifact() {
+        return !POM_TYPE.equals(type);
+    }
+
+    /**
+     * Gets exclusions which apply to dependencies of this node. These include exclusions
+     * declared along the path from the root to this node
+     *
+     * @return Set of exclusions
+     */
+    @NonNull
+    public Set<Exclusion> getExclusions() {
+        return exclusions;
+    }
+
+    /**
+     * Returns whether given dependency is excluded from this node's dependencies
+     *
+     * @param dependency Dependency
+     * @return Whether dependency is excluded or not
+     */
+    public boolean isExcluded(@NonNull Dependency dependency) {
+        for (Exclusion exclusion : exclusions) {
+            if (exclusion.matches(dependency)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets repository where this dependency's POM was found. Is {@code null} when
+     * POM was read from the local download directory, or it wasn't found at all.
+     * Artifact downloads may start while resolution is still running, so this is
+     * best-effort and might not be set yet when read from a download task
+     *
+     * @return Repository URL
+     */
+    @Nullable
+    public URL getRepository() {
+        return repository;
+    }
+
+    /**
+     * Gets direct dependencies of this node
+     *
+     * @return List of direct dependencies
+     */
+    @NonNull
+    public List<DependencyNode> getChildren() {
+        return childrenView;
+    }
+
+    /**
+     * Gets dependency cycles which were cut at this node. Each cycle starts and ends with
+     * this node's dependency, and edge back to the start of the cycle is not part of the graph
+     *
+     * @return List of cycles
+     */
+    @NonNull
+    public List<List<Dependency>> getCycles() {
+        return Collections.unmodifiableList(cycles);
+    }
+
+    void setRepository(@Nullable URL repository) {
+        this.repository = repository;
+    }
+
+    void addChild(@NonNull DependencyNode child) {
+        this.children.add(child);
+    }
+
+    void clearChildren() {
+        this.children.clear();
+        this.cycles.clear();
+    }
+
+    void addCycle(@NonNull List<Dependency> cycle) {
+        this.cycles.add(Collections.unmodifiableList(new ArrayList<>(cycle)));
+    }
+
+    @Override
+    public String toString() {
+        return "DependencyNode{" +
+                "dependency=" + dependency +
+                ", optional=" + optional +
+                ", type='" + type + '\'' +
+                ", repository=" + repository +
+                ", children=" + children.size() +
+                '}';
+    }
+}
@@ -0,0 +1,495 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.artifact.Exclusion;
+import eu.mikroskeem.picomaven.artifact.TransitiveDependencyProcessor;
+import eu.mikroskeem.picomaven.internal.DataProcessor;
+import eu.mikroskeem.picomaven.internal.ModelIndex;
+import eu.mikroskeem.picomaven.internal.SneakyThrow;
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import eu.mikroskeem.picomaven.internal.UrlUtils;
+import eu.mikroskeem.picomaven.internal.VersionUtils;
+import org.apache.maven.model.Model;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Walks POMs breadth-first to build a {@link DependencyGraph}. No artifacts are downloaded here.
+ *
+ * @author Mark Vainomaa
+ */
+final class DependencyResolver {
+    private static final Logger logger = LoggerFactory.getLogger(DependencyResolver.class);
+    private static final String INDEX_EXTENSION = "pom.idx";
+
+    private final DownloadSession session;
+    private final ExecutorService executorService;
+    private final ArtifactLocator locator;
+    private final EffectiveModelBuilder modelBuilder;
+    private final Path downloadPath;
+    private final List<TransitiveDependencyProcessor> transitiveDependencyProcessors;
+    private final ConflictStrategy conflictStrategy;
+    private final List<Exclusion> exclusions;
+    private final VersionResolver versionResolver;
+    private final Consumer<DependencyNode> nodeListener;
+
+    // Only accessed from level completion stages, which run one after another
+    private final Map<String, DependencyNode> visited = new HashMap<>();
+    private final Map<String, DependencyNode> selected = new HashMap<>();
+    private final List<DependencyNode> nodes = new ArrayList<>();
+
+    DependencyResolver(@NonNull DownloadSession session, @NonNull ExecutorService executorService,
+                       @NonNull ArtifactLocator locator, @NonNull Path downloadPath,
+                       @NonNull List<TransitiveDependencyProcessor> dependencyProcessors,
+                       @NonNull ConflictStrategy conflictStrategy, @NonNull List<Exclusion> exclusions,
+                       @NonNull VersionResolver versionResolver, @Nullable Consumer<DependencyNode> nodeListener) {
+        this.session = session;
+        this.executorService = executorService;
+        this.locator = locator;
+        this.modelBuilder = new EffectiveModelBuilder(session, executorService, locator, downloadPath);
+        this.downloadPath = downloadPath;
+        this.transitiveDependencyProcessors = dependencyProcessors;
+        this.conflictStrategy = conflictStrategy;
+        this.exclusions = exclusions;
+        this.versionResolver = versionResolver;
+        this.nodeListener = nodeListener;
+    }
+
+    /**
+     * Resolves dependency graph for given dependencies
+     *
+     * @param dependencies Requested dependencies
+     * @return Future of {@link DependencyGraph}
+     */
+    @NonNull
+    CompletableFuture<DependencyGraph> resolve(@NonNull List<Dependency> dependencies) {
+        List<CompletableFuture<Dependency>> requested = new ArrayList<>(dependencies.size());
+        for (Dependency dependency : dependencies) {
+            requested.add(resolveVersion(dependency).thenApply(resolved -> {
+                if (resolved == null) {
+                    // Let the artifact download report the failure
+                    logger.warn("No version of {} matches {}", dependency, dependency.getVersion());
+                    return dependency;
+                }
+                return resolved;
+            }));
+        }
+
+        return TaskUtils.waitForAll(requested).thenCompose(v -> resolveRoots(requested.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList())));
+    }
+
+    @NonNull
+    private CompletableFuture<DependencyGraph> resolveRoots(@NonNull List<Dependency> dependencies) {
+        List<DependencyNode> roots = new ArrayList<>(dependencies.size());
+        List<DependencyNode> level = new ArrayList<>(dependencies.size());
+        for (Dependency dependency : dependencies) {
+            DependencyNode node = visited.get(DownloadSession.key(dependency));
+            if (node == null) {
+                node = new DependencyNode(dependency, false, exclusions);
+                visited.put(DownloadSession.key(dependency), node);
+                selected.putIfAbsent(DownloadSession.conflictKey(dependency), node);
+                nodes.add(node);
+                level.add(node);
+            }
+            roots.add(node);
+        }
+
+        return resolveLevel(level).thenApply(v -> {
+            if (conflictStrategy == ConflictStrategy.HIGHEST) {
+                applyHighestVersions(roots);
+            }
+            return new DependencyGraph(roots, nodes);
+        });
+    }
+
+    @NonNull
+    private CompletableFuture<Void> resolveLevel(@NonNull List<DependencyNode> level) {
+        if (level.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Process all POMs on this level in parallel
+        List<CompletableFuture<List<DependencyNode>>> futures = new ArrayList<>(level.size());
+        for (DependencyNode node : level) {
+            if (nodeListener != null && conflictStrategy == ConflictStrategy.NEAREST) {
+                // Nearer versions are always processed first, so node selected at this point won't be replaced anymore.
+                // Notifying before its POM is fetched lets the artifact download overlap with that
+                nodeListener.accept(node);
+            }
+            futures.add(resolveNode(node));
+        }
+
+        return TaskUtils.waitForAll(futures).thenCompose(v -> {
+            List<DependencyNode> nextLevel = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                DependencyNode parent = level.get(i);
+                for (DependencyNode candidate : futures.get(i).join()) {
+                    Dependency dependency = candidate.getDependency();
+                    DependencyNode existing = visited.get(DownloadSession.key(dependency));
+
+                    // Mediate versions, losing ones won't be processed at all
+                    DependencyNode winner;
+                    if (existing == null && (winner = selected.get(DownloadSession.conflictKey(dependency))) != null) {
+                        if (conflictStrategy == ConflictStrategy.NEAREST
+                                || VersionUtils.compare(dependency.getVersion(), winner.getDependency().getVersion()) <= 0) {
+                            logger.debug("{} requested by {} conflicts with version {}, using latter",
+                                    dependency, parent.getDependency(), winner.getDependency().getVersion());
+                            existing = winner;
+                        }
+                    }
+
+                    if (existing == null) {
+                        logger.debug("{} requires transitive dependency {}", parent.getDependency(), dependency);
+                        visited.put(DownloadSession.key(dependency), candidate);
+                        selected.put(DownloadSession.conflictKey(dependency), candidate);
+                        nodes.add(candidate);
+                        nextLevel.add(candidate);
+                        parent.addChild(candidate);
+                    } else if (!parent.getChildren().contains(existing)) {
+                        // Already resolved elsewhere, just link it unless that closes a cycle
+                        linkOrCutCycle(parent, existing);
+                    }
+                }
+            }
+            return resolveLevel(nextLevel);
+        });
+    }
+
+    @NonNull
+    private CompletableFuture<List<DependencyNode>> resolveNode(@NonNull DependencyNode node) {
+        Dependency dependency = node.getDependency();
+        if (!dependency.isTransitive() || node.getExclusions().contains(Exclusion.ALL)) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        Path artifactIndexPath = UrlUtils.formatLocalPath(downloadPath, dependency, INDEX_EXTENSION);
+        Path artifactPomDownloadPath = UrlUtils.formatLocalPath(downloadPath, dependency, "pom");
+        return CompletableFuture.supplyAsync(() -> {
+            // Use local model index if node was resolved before. Artifact itself may be absent (POM type
+            // dependencies) or may have been downloaded while resolution continues, so it tells nothing
+            try {
+                if (Files.exists(artifactIndexPath)) {
+                    logger.debug("{} is already resolved", dependency);
+                    return Optional.of(ModelIndex.read(artifactIndexPath));
+                }
+                if (Files.exists(artifactPomDownloadPath)) {
+                    // Sanitized POM written by an older version
+                    logger.debug("{} is already resolved", dependency);
+                    Model model = DataProcessor.getPom(artifactPomDownloadPath.toUri().toURL());
+                    return Optional.ofNullable(model != null ? ModelIndex.fromModel(model) : null);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to read {} local model: {}", dependency, e.getMessage());
+            }
+            return null;
+        }, executorService).thenCompose(localIndex -> {
+            if (localIndex != null) {
+                return CompletableFuture.completedFuture(localIndex.orElse(null));
+            }
+
+            logger.trace("Downloading {} POM", dependency);
+            return locator.locate(dependency, "pom", session.getRepositories(), ArtifactLocator.POM_FETCHER).thenCompose(located -> {
+                if (located == null) {
+                    logger.trace("{} POM not found", dependency);
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                node.setRepository(located.getRepository());
+                return modelBuilder.build(dependency, located.getValue()).thenApplyAsync(model -> {
+                    // Store only what is needed to walk the graph next time
+                    ModelIndex index = ModelIndex.fromModel(model);
+                    try {
+                        index.write(artifactIndexPath);
+                    } catch (IOException e) {
+                        SneakyThrow.rethrow(e);
+                    }
+                    return index;
+                }, executorService);
+            });
+        }).thenApply(index -> processModel(node, index)).thenCompose(this::resolveVersions).exceptionally(e -> {
+            logger.warn("Failed to process {} POM: {}", dependency, TaskUtils.unwrapException(e).getMessage());
+            return Collections.emptyList();
+        });
+    }
+
+    /**
+     * Replaces dynamic versions of given nodes with concrete ones. Nodes which versions can't be resolved are dropped
+     *
+     * @param children Nodes to process
+     * @return Future of nodes with concrete versions
+     */
+    @NonNull
+    private CompletableFuture<List<DependencyNode>> resolveVersions(@NonNull List<DependencyNode> children) {
+        List<CompletableFuture<DependencyNode>> futures = new ArrayList<>(children.size());
+        for (DependencyNode child : children) {
+            Dependency dependency = child.getDependency();
+            futures.add(resolveVersion(dependency).thenApply(resolved -> {
+                if (resolved == null) {
+                    logger.warn("No version of transitive dependency {} matches {}", dependency, dependency.getVersion());
+                    return null;
+                }
+                return resolved == dependency ? child :
+                        new DependencyNode(resolved, child.isOptional(), child.getType(), child.getExclusions());
+            }));
+        }
+
+        return TaskUtils.waitForAll(futures).thenApply(v -> futures.stream()
+                .map(CompletableFuture::join)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Resolves dynamic version of given dependency
+     *
+     * @param dependency Dependency
+     * @return Future of given dependency if its version is not dynamic, dependency with resolved version or
+     * {@code null} if no version matches
+     */
+    @NonNull
+    private CompletableFuture<@Nullable Dependency> resolveVersion(@NonNull Dependency dependency) {
+        if (!VersionResolver.isDynamic(dependency.getVersion())) {
+            return CompletableFuture.completedFuture(dependency);
+        }
+
+        return versionResolver.resolve(dependency).thenApply(version -> {
+            if (version == null) {
+                return null;
+            }
+
+            logger.debug("Resolved {} version {} to {}", dependency, dependency.getVersion(), version);
+            return new Dependency(dependency.getGroupId(), dependency.getArtifactId(), version,
+                    dependency.getClassifier(), dependency.isTransitive(), dependency.getChecksums());
+        });
+    }
+
+    @NonNull
+    private List<DependencyNode> processModel(@NonNull DependencyNode node, @Nullable ModelIndex index) {
+        Dependency dependency = node.getDependency();
+        if (index == null || index.getDependencies().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Add all repositories from transitive POM
+        for (String repository : index.getRepositories()) {
+            try {
+                URL url = new URL(repository);
+                logger.debug("Adding new repository URL {}", url);
+                session.addRepository(url);
+            } catch (MalformedURLException e) {
+                logger.warn(
+                        "URL '{}' referenced by dependency {}:{}:{} is invalid",
+                        repository,
+                        dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(),
+                        e
+                );
+            }
+        }
+
+        List<DependencyNode> children = new ArrayList<>(index.getDependencies().size());
+        for (ModelIndex.Entry modelDependency : index.getDependencies()) {
+            // Apply filters
+            TransitiveDependencyProcessor.DownloadableTransitiveDependency dep = new TransitiveDependencyProcessor.DownloadableTransitiveDependency(
+                    dependency,
+                    modelDependency.getGroupId(),
+                    modelDependency.getArtifactId(),
+                    modelDependency.getVersion(),
+                    modelDependency.getClassifier(),
+                    modelDependency.getScope(),
+                    modelDependency.isOptional(),
+                    modelDependency.getExclusions()
+            );
+            for (TransitiveDependencyProcessor processor : this.transitiveDependencyProcessors) {
+                processor.accept(dep);
+            }
+
+            // Filtered, do not download
+            if (!dep.isAllowed()) {
+                continue;
+            }
+
+            // Ignore certain scopes
+            if (!DataProcessor.RELEVANT_STRING_SCOPE_PREDICATE.test(dep.getScope())) {
+                continue;
+            }
+
+            // Build PicoMaven dependency object
+            Dependency transitiveDependency = new Dependency(
+                    dep.getGroupId(),
+                    dep.getArtifactId(),
+                    dep.getVersion(),
+                    dep.getClassifier(),
+                    true,
+                    Collections.emptyList()
+            );
+
+            // Validate
+            try {
+                Objects.requireNonNull(transitiveDependency.getGroupId(), "Group id cannot be null");
+                Objects.requireNonNull(transitiveDependency.getArtifactId(), "Artifact id cannot be null");
+                Objects.requireNonNull(transitiveDependency.getVersion(), "Version cannot be null");
+                requireInterpolated(transitiveDependency.getGroupId(), "Group id");
+                requireInterpolated(transitiveDependency.getArtifactId(), "Artifact id");
+                requireInterpolated(transitiveDependency.getVersion(), "Version");
+            } catch (NullPointerException | IllegalArgumentException e) {
+                logger.warn("{} transitive dependency {} is invalid: {}", dependency, transitiveDependency, e.getMessage());
+                continue;
+            }
+
+            // Excluded by some dependency on the path, don't even look at its POM
+            if (node.isExcluded(transitiveDependency)) {
+                logger.trace("{} transitive dependency {} is excluded", dependency, transitiveDependency);
+                continue;
+            }
+
+            // Exclusions are inherited by the whole subtree
+            List<Exclusion> childExclusions = new ArrayList<>(node.getExclusions());
+            childExclusions.addAll(dep.getExclusions());
+            String type = modelDependency.getType() != null ? modelDependency.getType() : DependencyNode.DEFAULT_TYPE;
+            children.add(new DependencyNode(transitiveDependency, dep.isOptional(), type, childExclusions));
+        }
+
+        return children;
+    }
+
+    /**
+     * Points all edges to selected highest versions and drops nodes which aren't reachable anymore
+     *
+     * @param roots Root nodes
+     */
+    private void applyHighestVersions(@NonNull List<DependencyNode> roots) {
+        for (DependencyNode node : nodes) {
+            List<DependencyNode> children = new ArrayList<>(node.getChildren());
+            node.clearChildren();
+            for (DependencyNode child : children) {
+                DependencyNode target = selected.get(DownloadSession.conflictKey(child.getDependency()));
+                if (!node.getChildren().contains(target)) {
+                    linkOrCutCycle(node, target);
+                }
+            }
+        }
+
+        Set<DependencyNode> reachable = new HashSet<>();
+        Deque<DependencyNode> queue = new ArrayDeque<>(roots);
+        DependencyNode current;
+        while ((current = queue.poll()) != null) {
+            if (reachable.add(current)) {
+                queue.addAll(current.getChildren());
+            }
+        }
+        nodes.removeIf(node -> !reachable.contains(node));
+    }
+
+    /**
+     * Links child to parent, unless parent is already reachable from the child. In that case
+     * the edge is left out and the cycle is recorded on parent
+     *
+     * @param parent Parent node
+     * @param child Child node
+     */
+    private static void linkOrCutCycle(@NonNull DependencyNode parent, @NonNull DependencyNode child) {
+        List<DependencyNode> path = findPath(child, parent);
+        if (path == null) {
+            parent.addChild(child);
+            return;
+        }
+
+        List<Dependency> cycle = new ArrayList<>(path.size() + 1);
+        cycle.add(parent.getDependency());
+        for (DependencyNode node : path) {
+            cycle.add(node.getDependency());
+        }
+        logger.warn("Dependency cycle detected, not linking {} to {}: {}", child.getDependency(), parent.getDependency(),
+                cycle.stream().map(DownloadSession::key).collect(Collectors.joining(" -> ")));
+        parent.addCycle(cycle);
+    }
+
+    /**
+     * Finds shortest path between two nodes
+     *
+     * @param from Node to start from
+     * @param target Node to look for
+     * @return Path from start node to target node, both inclusive, or {@code null} if target is not reachable
+     */
+    @Nullable
+    private static List<DependencyNode> findPath(@NonNull DependencyNode from, @NonNull DependencyNode target) {
+        Map<DependencyNode, DependencyNode> predecessors = new HashMap<>();
+        Deque<DependencyNode> queue = new ArrayDeque<>();
+        predecessors.put(from, from);
+        queue.add(from);
+        DependencyNode current;
+        while ((current = queue.poll()) != null) {
+            if (current == target) {
+                List<DependencyNode> path = new ArrayList<>();
+                for (DependencyNode node = target; node != from; node = predecessors.get(node)) {
+                    path.add(node);
+                }
+                path.add(from);
+                Collections.reverse(path);
+                return path;
+            }
+            for (DependencyNode child : current.getChildren()) {
+                if (predecessors.putIfAbsent(child, current) == null) {
+                    queue.add(child);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void requireInterpolated(@NonNull String value, @NonNull String name) {
+        if (value.contains("${")) {
+            throw new IllegalArgumentException(name + " contains unresolved property reference");
+        }
+    }
+}
@@ -34,9 +34,11 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * PicoMaven download result
@@ -51,6 +53,7 @@ public final class DownloadResult {
     private final boolean success;
     private final boolean optional;
     private final Exception downloadException;
+    private final List<List<Dependency>> cycles;
 
     @MonotonicNonNull
     private volatile List<Path> downloadedFiles = null;
@@ -60,13 +63,15 @@ public final class DownloadResult {
                           @NonNull Path artifactPath,
                           boolean success,
                           boolean optional,
-                          @Nullable Exception downloadException) {
+                          @Nullable Exception downloadException,
+                          @NonNull List<List<Dependency>> cycles) {
         this.dependency = dependency;
         this.transitiveDependencies = new ArrayList<>(transitiveDependencies);
         this.artifactPath = artifactPath;
         this.success = success;
         this.optional = optional;
         this.downloadException = downloadException;
+        this.cycles = cycles;
     }
 
     /**
@@ -81,15 +86,10 @@ public final class DownloadResult {
         if (files == null) {
             synchronized (this) {
                 if (downloadedFiles == null) {
-                    downloadedFiles = files = new LinkedList<>();
-                    files.add(getArtifactPath());
-
-                    for (DownloadResult transitiveDependency : getTransitiveDependencies()) {
-                        if (!transitiveDependency.isSuccess()) {
-                            continue;
-                        }
-                        files.addAll(transitiveDependency.getAllDownloadedFiles());
-                    }
+                    // Transitive dependencies might share results with each other
+                    Set<Path> collected = new LinkedHashSet<>();
+                    collectDownloadedFiles(collected);
+                    downloadedFiles = files = new ArrayList<>(collected);
                 }
             }
         }
@@ -97,6 +97,43 @@ public final class DownloadResult {
         return Collections.unmodifiableList(files);
     }
 
+    private void collectDownloadedFiles(@NonNull Set<Path> files) {
+        if (!files.add(getArtifactPath())) {
+            return;
+        }
+
+        for (DownloadResult transitiveDependency : getTransitiveDependencies()) {
+            if (!transitiveDependency.isSuccess()) {
+                continue;
+            }
+            transitiveDependency.collectDownloadedFiles(files);
+        }
+    }
+
+    /**
+     * Gets dependency cycles which were cut while resolving this dependency and its transitive
+     * dependencies. Each cycle starts and ends with the same dependency
+     *
+     * @return List of cycles
+     */
+    @NonNull
+    public List<List<Dependency>> getCycles() {
+        Set<List<Dependency>> collected = new LinkedHashSet<>();
+        collectCycles(collected, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return Collections.unmodifiableList(new ArrayList<>(collected));
+    }
+
+    private void collectCycles(@NonNull Set<List<Dependency>> collected, @NonNull Set<DownloadResult> seen) {
+        if (!seen.add(this)) {
+            return;
+        }
+
+        collected.addAll(cycles);
+        for (DownloadResult transitiveDependency : transitiveDependencies) {
+            transitiveDependency.collectCycles(collected, seen);
+        }
+    }
+
     /**
      * Gets dependency related to this result
      *
@@ -187,13 +224,22 @@ public final class DownloadResult {
                                     @NonNull Path artifactPath,
                                     boolean optional,
                                     @NonNull Collection<DownloadResult> transitiveDependencies) {
-        return new DownloadResult(dependency, transitiveDependencies, artifactPath, true, optional, null);
+        return ofSuccess(dependency, artifactPath, optional, transitiveDependencies, Collections.emptyList());
+    }
+
+    static DownloadResult ofSuccess(@NonNull Dependency dependency,
+                                    @NonNull Path artifactPath,
+                                    boolean optional,
+                                    @NonNull Collection<DownloadResult> transitiveDependencies,
+                                    @NonNull List<List<Dependency>> cycles) {
+        return new DownloadResult(dependency, transitiveDependencies, artifactPath, true, optional, null, cycles);
     }
 
     static DownloadResult ofFailure(@NonNull Dependency dependency,
                                     @NonNull Path artifactPath,
                                     boolean optional,
                                     @NonNull Exception downloadException) {
-        return new DownloadResult(dependency, Collections.emptyList(), artifactPath, false, optional, downloadException);
+        return new DownloadResult(dependency, Collections.emptyList(), artifactPath, false, optional, downloadException,
+                Collections.emptyList());
     }
 }
@@ -0,0 +1,212 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.model.Model;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * State shared by all resolutions and downloads started from a single {@link PicoMaven} instance
+ *
+ * @author Mark Vainomaa
+ */
+final class DownloadSession {
+    private final Map<String, URL> repositoryUrls = new LinkedHashMap<>();
+    private final RepositoryStats repositoryStats;
+    private final ConcurrentMap<String, CompletableFuture<DownloadResult>> downloads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Model>> models = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Model>> importedModels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Metadata>> versionMetadata = new ConcurrentHashMap<>();
+
+    DownloadSession(@NonNull Collection<URL> repositoryUrls, @Nullable RepositoryStats repositoryStats) {
+        // URL#hashCode and URL#equals may resolve host names, so repositories are told apart by their string form
+        for (URL repository : repositoryUrls) {
+            this.repositoryUrls.putIfAbsent(repository.toExternalForm(), repository);
+        }
+        this.repositoryStats = repositoryStats;
+    }
+
+    /**
+     * Gets a snapshot of repositories known to this session. Repositories are in configured order, followed by
+     * ones added later in order they were added, unless adaptive ordering is enabled, in which case repositories
+     * expected to serve artifacts fastest come first
+     *
+     * @return List of repository URLs
+     */
+    @NonNull
+    List<URL> getRepositories() {
+        List<URL> repositories;
+        synchronized (repositoryUrls) {
+            repositories = new ArrayList<>(repositoryUrls.values());
+        }
+        return repositoryStats != null ? repositoryStats.order(repositories) : repositories;
+    }
+
+    /**
+     * Adds a repository, e.g. one referenced by a POM
+     *
+     * @param repository Repository URL
+     */
+    void addRepository(@NonNull URL repository) {
+        synchronized (repositoryUrls) {
+            repositoryUrls.putIfAbsent(repository.toExternalForm(), repository);
+        }
+    }
+
+    /**
+     * Gets in-flight (or already finished) artifact download for given dependency, or starts a new one
+     * using given task factory if there's none yet. This way every requester of the same coordinate
+     * shares a single download.
+     *
+     * @param dependency Dependency to download
+     * @param taskFactory Factory used to start the download if it's not already running
+     * @return Future of {@link DownloadResult}
+     */
+    @NonNull
+    CompletableFuture<DownloadResult> download(@NonNull Dependency dependency,
+                                               @NonNull Supplier<CompletableFuture<DownloadResult>> taskFactory) {
+        return singleFlight(downloads, key(dependency), taskFactory);
+    }
+
+    /**
+     * Gets (possibly still loading) raw POM model of given dependency, or starts loading it using given
+     * factory if it's not known yet. Used for POMs which are shared by many artifacts, like parent POMs.
+     *
+     * @param dependency Dependency which POM to get
+     * @param modelFactory Factory used to load the model if it's not loaded yet
+     * @return Future of {@link Model}, or future of {@code null} if it wasn't found
+     */
+    @NonNull
+    CompletableFuture<@Nullable Model> getModel(@NonNull Dependency dependency,
+                                                @NonNull Supplier<CompletableFuture<@Nullable Model>> modelFactory) {
+        return singleFlight(models, key(dependency), modelFactory);
+    }
+
+    /**
+     * Gets (possibly still building) effective model of imported BOM, or starts building it using given
+     * factory if it's not known yet.
+     *
+     * @param dependency BOM dependency
+     * @param modelFactory Factory used to build the model if it's not built yet
+     * @return Future of {@link Model}, or future of {@code null} if it wasn't found
+     */
+    @NonNull
+    CompletableFuture<@Nullable Model> getImportedModel(@NonNull Dependency dependency,
+                                                        @NonNull Supplier<CompletableFuture<@Nullable Model>> modelFactory) {
+        return singleFlight(importedModels, key(dependency), modelFactory);
+    }
+
+    /**
+     * Gets (possibly still loading) group level metadata of an artifact, or starts loading it using given
+     * factory if it's not known yet.
+     *
+     * @param key Artifact key in {@code groupId:artifactId} format
+     * @param metadataFactory Factory used to load the metadata if it's not loaded yet
+     * @return Future of {@link Metadata}, or future of {@code null} if it wasn't found
+     */
+    @NonNull
+    CompletableFuture<@Nullable Metadata> getVersionMetadata(@NonNull String key,
+                                                             @NonNull Supplier<CompletableFuture<@Nullable Metadata>> metadataFactory) {
+        return singleFlight(versionMetadata, key, metadataFactory);
+    }
+
+    /**
+     * Returns future registered for given key, or registers a new one completed by given factory's future.
+     * Factory is invoked outside of the map operation, so it may safely register other futures itself
+     * (e.g when a BOM imports another BOM)
+     *
+     * @param futures Futures map
+     * @param key Key
+     * @param factory Factory of the future
+     * @param <T> Future value type
+     * @return Registered future
+     */
+    @NonNull
+    private static <T> CompletableFuture<T> singleFlight(@NonNull ConcurrentMap<String, CompletableFuture<T>> futures,
+                                                         @NonNull String key,
+                                                         @NonNull Supplier<CompletableFuture<T>> factory) {
+        CompletableFuture<T> future = futures.get(key);
+        if (future != null) {
+            return future;
+        }
+
+        CompletableFuture<T> registered = new CompletableFuture<>();
+        if ((future = futures.putIfAbsent(key, registered)) != null) {
+            return future;
+        }
+
+        try {
+            factory.get().whenComplete((value, e) -> {
+                if (e != null) {
+                    registered.completeExceptionally(e);
+                } else {
+                    registered.complete(value);
+                }
+            });
+        } catch (Throwable e) {
+            registered.completeExceptionally(e);
+        }
+        return registered;
+    }
+
+    /**
+     * Builds a session-unique key for given dependency
+     *
+     * @param dependency Dependency
+     * @return Key in {@code groupId:artifactId:version:classifier} format
+     */
+    @NonNull
+    static String key(@NonNull Dependency dependency) {
+        return dependency.getGroupId() + ':' + dependency.getArtifactId() + ':' + dependency.getVersion() + ':'
+                + (dependency.getClassifier() != null ? dependency.getClassifier() : "");
+    }
+
+    /**
+     * Builds a version-less key for given dependency, used to detect version conflicts
+     *
+     * @param dependency Dependency
+     * @return Key in {@code groupId:artifactId:classifier} format
+     */
+    @NonNull
+    static String conflictKey(@NonNull Dependency dependency) {
+        return dependency.getGroupId() + ':' + dependency.getArtifactId() + ':'
+                + (dependency.getClassifier() != null ? dependency.getClassifier() : "");
+    }
+}
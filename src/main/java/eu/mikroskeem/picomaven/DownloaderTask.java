@@ -28,346 +28,179 @@ package eu.mikroskeem.picomaven;
 import eu.mikroskeem.picomaven.artifact.ArtifactChecksum;
 import eu.mikroskeem.picomaven.artifact.ArtifactChecksum.ChecksumAlgo;
 import eu.mikroskeem.picomaven.artifact.Dependency;
-import eu.mikroskeem.picomaven.artifact.TransitiveDependencyProcessor;
 import eu.mikroskeem.picomaven.internal.DataProcessor;
 import eu.mikroskeem.picomaven.internal.FileUtils;
 import eu.mikroskeem.picomaven.internal.SneakyThrow;
 import eu.mikroskeem.picomaven.internal.StreamUtils;
 import eu.mikroskeem.picomaven.internal.TaskUtils;
 import eu.mikroskeem.picomaven.internal.UrlUtils;
-import org.apache.maven.artifact.repository.metadata.Metadata;
-import org.apache.maven.model.Model;
-import org.apache.maven.model.Repository;
+import eu.mikroskeem.picomaven.transport.Transport;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.SocketTimeoutException;
+import java.io.OutputStream;
 import java.net.URL;
-import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.function.Supplier;
-
-import static eu.mikroskeem.picomaven.PicoMaven.REMOTE_CHECKSUM_ALGOS;
+import java.util.stream.Collectors;
 
 /**
+ * Downloads a single artifact of a resolved {@link DependencyNode}
+ *
  * @author Mark Vainomaa
  */
-public final class DownloaderTask implements Supplier<DownloadResult> {
+public final class DownloaderTask {
     private static final Logger logger = LoggerFactory.getLogger(DownloaderTask.class);
 
+    private final DownloadSession session;
     private final ExecutorService executorService;
+    private final ArtifactLocator locator;
+    private final Transport transport;
+    private final DependencyNode node;
     private final Dependency dependency;
     private final Path downloadPath;
-    // Whether dependency downloading failure is fatal or not
-    private final boolean optional;
-    private final Set<URL> repositoryUrls;
-    private final List<TransitiveDependencyProcessor> transitiveDependencyProcessors;
-    private final Deque<CompletableFuture<DownloadResult>> transitiveDownloads;
-
-    private final boolean isChild;
+    private final ChecksumPolicy checksumPolicy;
 
-    public DownloaderTask(ExecutorService executorService, Dependency dependency, Path downloadPath, List<URL> repositoryUrls,
-                          List<TransitiveDependencyProcessor> dependencyProcessors) {
-        this(executorService, dependency, downloadPath,
-                Collections.synchronizedSet(new HashSet<>(repositoryUrls)),
-                false,
-                new ConcurrentLinkedDeque<>(), dependencyProcessors, false);
-    }
-
-    private DownloaderTask(ExecutorService executorService, Dependency dependency, Path downloadPath,
-                           Set<URL> repositoryUrls, boolean optional, Deque<CompletableFuture<DownloadResult>> transitiveDownloads,
-                           List<TransitiveDependencyProcessor> dependencyProcessors, boolean isChild) {
+    DownloaderTask(DownloadSession session, ExecutorService executorService, ArtifactLocator locator,
+                   Transport transport, DependencyNode node, Path downloadPath, ChecksumPolicy checksumPolicy) {
+        this.session = session;
         this.executorService = executorService;
-        this.dependency = dependency;
+        this.locator = locator;
+        this.transport = transport;
+        this.node = node;
+        this.dependency = node.getDependency();
         this.downloadPath = downloadPath;
-        this.optional = optional;
-        this.repositoryUrls = repositoryUrls;
-        this.transitiveDownloads = transitiveDownloads;
-        this.transitiveDependencyProcessors = dependencyProcessors;
-        this.isChild = isChild;
-    }
-
-    private DownloaderTask(DownloaderTask parent, Dependency dependency, boolean optional) {
-        this(parent.executorService, dependency, parent.downloadPath, parent.repositoryUrls,
-                optional, parent.transitiveDownloads, parent.transitiveDependencyProcessors, true);
+        this.checksumPolicy = checksumPolicy;
     }
 
-    @Override
-    public DownloadResult get() {
-        logger.trace("Trying to download dependency {}", dependency);
-        Path artifactPomDownloadPath = UrlUtils.formatLocalPath(downloadPath, dependency, "pom");
+    /**
+     * Starts downloading this task's artifact. Returned future is composed from asynchronous stages, so
+     * no executor thread is ever blocked waiting for other tasks to finish. Transitive dependencies are
+     * not part of the returned result.
+     *
+     * @return Future of {@link DownloadResult}
+     */
+    @NonNull
+    public CompletableFuture<DownloadResult> download() {
         Path artifactDownloadPath = UrlUtils.formatLocalPath(downloadPath, dependency, "jar");
-        List<DownloadResult> transitive = new LinkedList<>();
-        URL artifactPomUrl;
-        URL artifactUrl;
 
-        try {
+        return CompletableFuture.supplyAsync(() -> Files.exists(artifactDownloadPath), executorService).thenCompose(exists -> {
             // Check if artifact already exists
-            if (Files.exists(artifactDownloadPath)) {
+            if (exists) {
                 logger.debug("{} is already downloaded", dependency);
-
-                if (dependency.isTransitive() && Files.exists(artifactPomDownloadPath)) {
-                    transitive.addAll(downloadTransitive(null, artifactPomDownloadPath.toUri().toURL()));
-                }
-                return DownloadResult.ofSuccess(dependency, artifactDownloadPath, optional, transitive);
+                return CompletableFuture.completedFuture(DownloadResult.ofSuccess(dependency, artifactDownloadPath,
+                        node.isOptional(), Collections.emptyList()));
             }
 
-            // Iterate through repositories until the artifact is found
-            for (URL repository : repositoryUrls) {
-                logger.debug("Trying repository {} for {}", repository, dependency);
-                Metadata groupMetadata = null;
-                Metadata artifactMetadata = null;
-
-                // Do dumb check whether we can download artifact without parsing XML at all
-                if (!dependency.getVersion().endsWith("-SNAPSHOT")) {
-                    logger.trace("Attempting to download artifact without parsing XML");
-                    artifactPomUrl = UrlUtils.buildDirectArtifactUrl(repository, dependency, "pom");
-                    artifactUrl = UrlUtils.buildDirectArtifactUrl(repository, dependency, "jar");
+            // Try repository where POM was found from first. This is best-effort, as
+            // resolution might still be fetching the POM when download starts
+            List<URL> repositories = session.getRepositories();
+            URL pomRepository = node.getRepository();
+            if (pomRepository != null) {
+                repositories.removeIf(repository -> repository.toExternalForm().equals(pomRepository.toExternalForm()));
+                repositories.add(0, pomRepository);
+            }
 
-                    try {
-                        DownloadResult result = downloadDependency(repository, artifactPomUrl, artifactUrl, transitive);
-                        if (!result.isSuccess() && result.getDownloadException() != null) {
-                            SneakyThrow.rethrow(result.getDownloadException());
-                            throw null;
-                        }
-                        return result;
-                    } catch (SocketTimeoutException | UnknownHostException e) {
-                        logger.warn("Connection to {} failed", repository, e);
-                        continue;
-                    } catch (IOException e) {
-                        // Non-fatal error, continue
-                        logger.trace("{} direct artifact URL {} did not work, trying to fetch XML", dependency, artifactUrl);
-                    }
+            logger.trace("Downloading {}", dependency);
+            Path temporary = FileUtils.getTemporaryFileName(artifactDownloadPath);
+            return locator.locate(dependency, "jar", repositories, response -> {
+                // Stream artifact to a temporary file, computing digests needed for verification along the way
+                Map<ChecksumAlgo, MessageDigest> digests = new EnumMap<>(ChecksumAlgo.class);
+                for (ChecksumAlgo algo : getDigestAlgorithms()) {
+                    digests.put(algo, algo.getMessageDigest());
                 }
-
-                // Try to find group metadata xml and grab artifact metadata xml URL from it
-                URL groupMetaURI = UrlUtils.buildGroupMetaURL(repository, dependency);
-                logger.trace("{} group meta URL: {}", dependency, groupMetaURI);
-                try {
-                    if ((groupMetadata = DataProcessor.getMetadata(groupMetaURI)) != null) {
-                        URL artifactMetaURI = UrlUtils.buildArtifactMetaURL(repository, groupMetadata, dependency);
-                        logger.trace("{} artifact meta URL: {}", dependency, artifactMetaURI);
-                        artifactMetadata = DataProcessor.getMetadata(artifactMetaURI);
-                    } else {
-                        throw new FileNotFoundException();
-                    }
-                } catch (SocketTimeoutException | UnknownHostException e) {
-                    logger.warn("Connection to {} failed", repository, e);
-                    continue;
-                } catch (FileNotFoundException e) {
-                    logger.debug("{} not found in repository {}", dependency, repository);
-                    continue;
+                Files.createDirectories(temporary.getParent());
+                try (InputStream is = response.getBody(); OutputStream os = Files.newOutputStream(temporary)) {
+                    StreamUtils.transferDigesting(is, os, digests.values());
                 } catch (IOException e) {
-                    // Skip this repository
-                    continue;
+                    Files.deleteIfExists(temporary);
+                    throw e;
                 }
 
-                // Figure out artifact URL and attempt to download it
-                artifactPomUrl = UrlUtils.buildArtifactURL(repository, artifactMetadata, dependency, "pom");
-                artifactUrl = UrlUtils.buildArtifactURL(repository, artifactMetadata, dependency, "jar");
-                return downloadDependency(repository, artifactPomUrl, artifactUrl, transitive);
-            }
-
-            // No repositories left to try
-            throw new IOException("Not found");
-        } catch (IOException e) {
-            return DownloadResult.ofFailure(dependency, artifactDownloadPath, optional, e);
-        }
-    }
-
-    private DownloadResult downloadDependency(URL repository, URL artifactPomUrl, URL artifactUrl, List<DownloadResult> transitive) throws IOException {
-        Path artifactPomDownloadPath = UrlUtils.formatLocalPath(downloadPath, dependency, "pom");
-        Path artifactDownloadPath = UrlUtils.formatLocalPath(downloadPath, dependency, "jar");
-
-        if (dependency.isTransitive()) {
-            try {
-                logger.trace("Downloading {} POM from {}", dependency, artifactPomUrl);
-                transitive.addAll(downloadTransitive(artifactPomDownloadPath, artifactPomUrl));
-            } catch (SocketTimeoutException | UnknownHostException e) {
-                logger.warn("Connection to {} failed", repository, e);
-                return DownloadResult.ofFailure(dependency, artifactDownloadPath, optional, e);
-            } catch (FileNotFoundException e) {
-                logger.trace("{} POM not found", dependency);
-            } catch (IOException e) {
-                logger.warn("Failed to download {} POM: {}", dependency, e.getMessage());
-            }
-        }
-
-        logger.trace("Downloading {} from {}", dependency, artifactUrl);
-        try (InputStream is = UrlUtils.openConnection(artifactUrl).getInputStream()) {
-            downloadArtifact(dependency, artifactUrl, artifactDownloadPath, is);
-            return DownloadResult.ofSuccess(dependency, artifactDownloadPath, optional, transitive);
-        } catch (FileNotFoundException e) {
-            logger.debug("{} not found in repository {}", dependency, repository);
-            return DownloadResult.ofFailure(dependency, artifactDownloadPath, optional, e);
-        } catch (IOException e) {
-            logger.debug("{} download failed: {}", dependency, e);
-            return DownloadResult.ofFailure(dependency, artifactDownloadPath, optional, e);
-        }
-    }
-
-    @NonNull
-    private List<DownloadResult> downloadTransitive(@Nullable Path pomPath, @NonNull URL artifactPomUrl) throws IOException {
-        List<CompletableFuture<DownloadResult>> transitive = Collections.emptyList();
-        Model model;
-        if ((model = DataProcessor.getPom(artifactPomUrl)) != null) {
-            // Write model to disk
-            if (pomPath != null) {
-                Path pomPathTemp = pomPath.resolveSibling(pomPath.getFileName() + ".tmp");
-                Files.createDirectories(pomPath.getParent());
-                try (BufferedWriter w = Files.newBufferedWriter(pomPathTemp, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
-                    DataProcessor.serializeModel(model, w, true);
+                Map<ChecksumAlgo, byte[]> computed = new EnumMap<>(ChecksumAlgo.class);
+                digests.forEach((algo, digest) -> computed.put(algo, digest.digest()));
+                return new FetchedArtifact(temporary, computed, DataProcessor.getHeaderChecksums(response));
+            }).thenCompose(located -> {
+                if (located == null) {
+                    logger.debug("{} not found in any repository", dependency);
+                    throw new CompletionException(new IOException("Not found"));
                 }
 
-                Files.move(pomPathTemp, pomPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
-            }
-
-            // Grab all dependencies
-            if (!model.getDependencies().isEmpty()) {
-                // Add all repositories from transitive POM
-                if (!model.getRepositories().isEmpty()) {
-                    for (Repository repository : model.getRepositories()) {
+                logger.trace("Downloaded {} from {}", dependency, located.getUrl());
+                return downloadArtifact(dependency, located.getRepository(), located.getUrl(), artifactDownloadPath,
+                        located.getValue()).whenComplete((v, e) -> {
+                    if (e != null) {
                         try {
-                            URL url = new URL(repository.getUrl());
-                            logger.debug("Adding new repository URL {}", url);
-                            repositoryUrls.add(url);
-                        } catch (MalformedURLException e) {
-                            logger.warn(
-                                    "URL '{}' referenced by dependency {}:{}:{} is invalid",
-                                    repository.getUrl(),
-                                    model.getGroupId(), model.getArtifactId(), model.getVersion(),
-                                    e
-                            );
+                            Files.deleteIfExists(temporary);
+                        } catch (IOException ex) {
+                            logger.trace("Failed to delete {}", temporary, ex);
                         }
                     }
-                }
-
-                transitive = new ArrayList<>(model.getDependencies().size());
-                for (org.apache.maven.model.Dependency modelDependency : model.getDependencies()) {
-                    // Apply filters
-                    TransitiveDependencyProcessor.DownloadableTransitiveDependency dep = new TransitiveDependencyProcessor.DownloadableTransitiveDependency(
-                            dependency,
-                            modelDependency.getGroupId(),
-                            modelDependency.getArtifactId(),
-                            modelDependency.getVersion(),
-                            modelDependency.getClassifier(),
-                            modelDependency.getScope(),
-                            "true".equalsIgnoreCase(modelDependency.getOptional())
-                    );
-                    for (TransitiveDependencyProcessor processor : this.transitiveDependencyProcessors) {
-                        processor.accept(dep);
-                    }
-
-                    // Filtered, do not download
-                    if (!dep.isAllowed()) {
-                        continue;
-                    }
-
-                    // Ignore certain scopes
-                    if (!DataProcessor.RELEVANT_STRING_SCOPE_PREDICATE.test(dep.getScope())) {
-                        continue;
-                    }
-
-                    // Build PicoMaven dependency object
-                    Dependency transitiveDependency = new Dependency(
-                            fixupIdentifiers(dependency, dep.getGroupId()),
-                            dep.getArtifactId(),
-                            fixupIdentifiers(dependency, dep.getVersion()),
-                            dep.getClassifier(),
-                            true,
-                            Collections.emptyList()
-                    );
-
-                    // Validate
-                    try {
-                        Objects.requireNonNull(transitiveDependency.getGroupId(), "Group id cannot be null");
-                        Objects.requireNonNull(transitiveDependency.getArtifactId(), "Artifact id cannot be null");
-                        Objects.requireNonNull(transitiveDependency.getVersion(), "Version cannot be null");
-                    } catch (NullPointerException e) {
-                        logger.warn("{} transitive dependency {} is invalid: {}", dependency, transitiveDependency, e.getMessage());
-                        continue;
-                    }
-
-                    logger.debug("{} requires transitive dependency {}", dependency, transitiveDependency);
-
-                    DownloaderTask task = new DownloaderTask(this, transitiveDependency, dep.isOptional());
-                    CompletableFuture<DownloadResult> future = CompletableFuture.supplyAsync(task, executorService);
-                    transitiveDownloads.add(future);
-                    transitive.add(future);
-                }
-            }
-
-            // Wait until all futures are done
-            TaskUtils.waitForAllFuturesUninterruptibly(transitive);
-            logger.trace("{} transitive dependencies download finished", dependency);
-
-            // Collect download results
-            List<DownloadResult> downloads = new ArrayList<>(transitive.size());
-            for (Future<DownloadResult> future : transitive) {
-                DownloadResult res = SneakyThrow.get(future::get);
-
-                if (!res.isSuccess()) {
-                    if (res.isOptional()) {
-                        continue;
-                    }
-                    logger.trace("Failed to download {}: {}", res.getDependency(), res.getDownloadException().getMessage());
-                }
-                downloads.add(res);
-            }
+                });
+            }).thenApply(v -> DownloadResult.ofSuccess(dependency, artifactDownloadPath, node.isOptional(), Collections.emptyList()));
+        }).exceptionally(t -> {
+            Exception e = TaskUtils.unwrapException(t);
+            logger.debug("{} download failed: {}", dependency, e);
+            return DownloadResult.ofFailure(dependency, artifactDownloadPath, node.isOptional(), e);
+        });
+    }
 
-            return downloads;
+    @NonNull
+    private CompletableFuture<Void> downloadArtifact(@NonNull Dependency dependency, @NonNull URL repository, @NonNull URL artifactUrl,
+                                                     @NonNull Path target, @NonNull FetchedArtifact artifact) {
+        // Check specified checksums, or ones sent along with the artifact
+        List<ArtifactChecksum> knownChecksums = null;
+        if (!dependency.getChecksums().isEmpty()) {
+            logger.trace("{} has checksums set, using them to check consistency", dependency);
+            knownChecksums = dependency.getChecksums();
         } else {
-            throw new FileNotFoundException();
+            List<ArtifactChecksum> accepted = selectChecksums(artifact.headerChecksums);
+            if (!accepted.isEmpty()) {
+                logger.trace("{} repository sent checksums in response headers, using them to check consistency", dependency);
+                knownChecksums = accepted;
+            }
         }
-    }
-
-    private void downloadArtifact(@NonNull Dependency dependency, @NonNull URL artifactUrl,
-                                  @NonNull Path target, @NonNull InputStream is) throws IOException {
-        // Copy artifact into memory
-        final byte[] artifactBytes = StreamUtils.readBytes(is);
 
-        // Check specified checksums
         List<CompletableFuture<Boolean>> checksumFutures;
-        if (!dependency.getChecksums().isEmpty()) {
-            logger.trace("{} has checksums set, using them to check consistency", dependency);
-            checksumFutures = new ArrayList<>(dependency.getChecksums().size());
-            for (ArtifactChecksum checksum : dependency.getChecksums()) {
-                checksumFutures.add(CompletableFuture.supplyAsync(
-                        () -> DataProcessor.verifyChecksum(checksum, artifactBytes),
-                        this.executorService
-                ));
+        if (knownChecksums != null) {
+            checksumFutures = new ArrayList<>(knownChecksums.size());
+            for (ArtifactChecksum checksum : knownChecksums) {
+                checksumFutures.add(CompletableFuture.completedFuture(artifact.verify(checksum)));
             }
+        } else if (checksumPolicy.getAlgorithms().isEmpty()) {
+            logger.trace("{} does not have any checksums defined locally, and remote checksums are disabled", dependency);
+            checksumFutures = Collections.emptyList();
+        } else if (checksumPolicy.isFirstAvailableOnly()) {
+            // Fetch remote checksums one by one until one is available, and verify it
+            logger.trace("{} does not have any checksums defined locally, fetching first available from remote repository", dependency);
+            checksumFutures = Collections.singletonList(verifyFirstAvailable(dependency, repository, artifactUrl,
+                    artifact, checksumPolicy.getAlgorithms().iterator()));
         } else {
             // Attempt to fetch remote checksums and verify them
             logger.trace("{} does not have any checksums defined locally, fetching them from remote repository", dependency);
-            checksumFutures = new ArrayList<>(REMOTE_CHECKSUM_ALGOS.length);
-            for (ChecksumAlgo remoteChecksumAlgo : REMOTE_CHECKSUM_ALGOS) {
-                checksumFutures.add(DataProcessor.getArtifactChecksum(executorService, artifactUrl, remoteChecksumAlgo).thenApply(checksum -> {
+            checksumFutures = new ArrayList<>(checksumPolicy.getAlgorithms().size());
+            for (ChecksumAlgo remoteChecksumAlgo : checksumPolicy.getAlgorithms()) {
+                checksumFutures.add(DataProcessor.getArtifactChecksum(transport, executorService, artifactUrl, repository, remoteChecksumAlgo).thenApply(checksum -> {
                     if (checksum != null) {
                         logger.trace("{} repository {} checksum is {}", dependency, checksum.getAlgo().name(), checksum.getChecksum());
-                        return DataProcessor.verifyChecksum(checksum, artifactBytes);
+                        return artifact.verify(checksum);
                     }
                     return null;
                 }));
@@ -375,43 +208,124 @@ public final class DownloaderTask implements Supplier<DownloadResult> {
         }
 
         // Wait for checksum queries to finish
-        boolean checksumVerified = false;
-        TaskUtils.waitForAllUninterruptibly(checksumFutures);
+        return TaskUtils.waitForAll(checksumFutures).thenAcceptAsync(v -> {
+            // Verify checksums
+            boolean checksumVerified = false;
+            for (CompletableFuture<Boolean> future : checksumFutures) {
+                Boolean artifactChecksumResult;
+                if ((artifactChecksumResult = future.getNow(null)) != null) {
+                    if (!artifactChecksumResult) {
+                        SneakyThrow.rethrow(new IOException("Checksum mismatch"));
+                    }
+                    checksumVerified = true;
+                }
+            }
 
-        // Verify checksums
-        for (CompletableFuture<Boolean> future : checksumFutures) {
-            Boolean artifactChecksumResult;
-            if ((artifactChecksumResult = future.getNow(null)) != null) {
-                if (!artifactChecksumResult) {
-                    throw new IOException("Checksum mismatch");
+            if (!checksumVerified) {
+                switch (checksumPolicy.getOnMissing()) {
+                    case FAIL:
+                        SneakyThrow.rethrow(new IOException("No checksums available"));
+                        break;
+                    case WARN:
+                        logger.warn("{} could not be verified, {} checksums weren't available", dependency, checksumPolicy.getAlgorithms());
+                        break;
+                    default:
+                        logger.debug("{}'s {} checksums weren't available remotely", dependency, checksumPolicy.getAlgorithms());
                 }
-                checksumVerified = true;
             }
-        }
 
-        if (!checksumVerified) {
-            logger.debug("{}'s {} checksums weren't available remotely", dependency, REMOTE_CHECKSUM_ALGOS);
+            // Move verified artifact into place
+            try {
+                Files.move(artifact.path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                SneakyThrow.rethrow(e);
+            }
+
+            // Download success!
+            logger.debug("{} download succeeded!", dependency);
+        }, executorService);
+    }
+
+    @NonNull
+    private CompletableFuture<@Nullable Boolean> verifyFirstAvailable(@NonNull Dependency dependency, @NonNull URL repository,
+                                                                      @NonNull URL artifactUrl, @NonNull FetchedArtifact artifact,
+                                                                      @NonNull Iterator<ChecksumAlgo> algorithms) {
+        if (!algorithms.hasNext()) {
+            return CompletableFuture.completedFuture(null);
         }
 
-        // Copy
-        FileUtils.writeAtomicReplace(target, artifactBytes);
+        ChecksumAlgo algo = algorithms.next();
+        return DataProcessor.getArtifactChecksum(transport, executorService, artifactUrl, repository, algo).thenCompose(checksum -> {
+            if (checksum == null) {
+                return verifyFirstAvailable(dependency, repository, artifactUrl, artifact, algorithms);
+            }
 
-        // Download success!
-        logger.debug("{} download succeeded!", dependency);
+            logger.trace("{} repository {} checksum is {}", dependency, checksum.getAlgo().name(), checksum.getChecksum());
+            return CompletableFuture.completedFuture(artifact.verify(checksum));
+        });
     }
 
-    private String fixupIdentifiers(@NonNull Dependency parent, String identifier) {
-        // Apparently that's a thing
-        if ("${project.groupId}".equalsIgnoreCase(identifier)) {
-            return parent.getGroupId();
+    /**
+     * Gets algorithms which digests are needed to verify this task's artifact
+     */
+    @NonNull
+    private Collection<ChecksumAlgo> getDigestAlgorithms() {
+        if (!dependency.getChecksums().isEmpty()) {
+            return dependency.getChecksums().stream().map(ArtifactChecksum::getAlgo).collect(Collectors.toSet());
         }
-        if ("${project.version}".equalsIgnoreCase(identifier)) {
-            return parent.getVersion();
+        return checksumPolicy.getAlgorithms();
+    }
+
+    /**
+     * Selects checksums to verify from given ones according to checksum policy, in order of preference
+     */
+    @NonNull
+    private List<ArtifactChecksum> selectChecksums(@NonNull List<ArtifactChecksum> checksums) {
+        List<ArtifactChecksum> selected = new ArrayList<>(checksums.size());
+        for (ChecksumAlgo algo : checksumPolicy.getAlgorithms()) {
+            for (ArtifactChecksum checksum : checksums) {
+                if (checksum.getAlgo() == algo) {
+                    if (checksumPolicy.isFirstAvailableOnly()) {
+                        return Collections.singletonList(checksum);
+                    }
+                    selected.add(checksum);
+                }
+            }
         }
-        return identifier;
+        return selected;
     }
 
-    private static class TransitiveDependencyNotFoundException extends Exception {
+    /**
+     * Artifact downloaded into a temporary file, along with its digests
+     */
+    private static final class FetchedArtifact {
+        private final Path path;
+        private final Map<ChecksumAlgo, byte[]> digests;
+        private final List<ArtifactChecksum> headerChecksums;
+
+        private FetchedArtifact(@NonNull Path path, @NonNull Map<ChecksumAlgo, byte[]> digests,
+                                @NonNull List<ArtifactChecksum> headerChecksums) {
+            this.path = path;
+            this.digests = digests;
+            this.headerChecksums = headerChecksums;
+        }
 
+        private boolean verify(@NonNull ArtifactChecksum checksum) {
+            byte[] digest = digests.get(checksum.getAlgo());
+            if (digest == null) {
+                // Not computed during transfer, read the file again
+                MessageDigest md = checksum.getAlgo().getMessageDigest();
+                try (InputStream is = new DigestInputStream(Files.newInputStream(path), md)) {
+                    byte[] buf = new byte[8192];
+                    while (is.read(buf) != -1) {
+                        // Digest is updated while reading
+                    }
+                } catch (IOException e) {
+                    SneakyThrow.rethrow(e);
+                }
+                digest = md.digest();
+            }
+            return checksum.getEncoding().verify(digest, checksum.getChecksum());
+        }
     }
 }
@@ -0,0 +1,406 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.internal.DataProcessor;
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import eu.mikroskeem.picomaven.internal.UrlUtils;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Repository;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds effective POM models by applying parent POMs, properties and dependency management
+ *
+ * @author Mark Vainomaa
+ */
+final class EffectiveModelBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(EffectiveModelBuilder.class);
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("\\$\\{([^}]+)}");
+    private static final String RAW_POM_EXTENSION = "pom.raw";
+    private static final int MAX_PARENT_DEPTH = 32;
+    private static final int MAX_INTERPOLATION_DEPTH = 16;
+
+    private final DownloadSession session;
+    private final ExecutorService executorService;
+    private final ArtifactLocator locator;
+    private final Path downloadPath;
+
+    EffectiveModelBuilder(@NonNull DownloadSession session, @NonNull ExecutorService executorService,
+                          @NonNull ArtifactLocator locator, @NonNull Path downloadPath) {
+        this.session = session;
+        this.executorService = executorService;
+        this.locator = locator;
+        this.downloadPath = downloadPath;
+    }
+
+    /**
+     * Builds effective model of given POM model
+     *
+     * @param dependency Dependency which given model belongs to
+     * @param model Raw POM model
+     * @return Future of effective model
+     */
+    @NonNull
+    CompletableFuture<Model> build(@NonNull Dependency dependency, @NonNull Model model) {
+        return build(dependency, model, Collections.emptySet());
+    }
+
+    @NonNull
+    private CompletableFuture<Model> build(@NonNull Dependency dependency, @NonNull Model model, @NonNull Set<String> importChain) {
+        return getLineage(model, new ArrayList<>())
+                .thenApply(lineage -> buildEffectiveModel(dependency, lineage))
+                .thenCompose(effective -> importDependencyManagement(dependency, effective, importChain))
+                .thenApply(EffectiveModelBuilder::applyDependencyManagement);
+    }
+
+    /**
+     * Gets effective model of imported BOM. Imported models are cached for the session
+     *
+     * @param dependency BOM dependency
+     * @param importChain Keys of BOMs which are being imported, used to detect import cycles
+     * @return Future of effective BOM model, or future of {@code null} if it was not found
+     */
+    @NonNull
+    private CompletableFuture<@Nullable Model> getImportedModel(@NonNull Dependency dependency, @NonNull Set<String> importChain) {
+        return session.getImportedModel(dependency, () -> getRawModel(dependency).thenCompose(model -> {
+            if (model == null) {
+                logger.warn("Imported BOM {} was not found", dependency);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            Set<String> chain = new HashSet<>(importChain);
+            chain.add(DownloadSession.key(dependency));
+            return build(dependency, model, chain);
+        }));
+    }
+
+    /**
+     * Gets raw POM model of given dependency. Models are cached in memory for the session and
+     * on the disk, so shared parent POMs are fetched and parsed only once.
+     *
+     * @param dependency Dependency
+     * @return Future of raw POM model, or future of {@code null} if it was not found
+     */
+    @NonNull
+    CompletableFuture<@Nullable Model> getRawModel(@NonNull Dependency dependency) {
+        return session.getModel(dependency, () -> {
+            Path rawPomPath = UrlUtils.formatLocalPath(downloadPath, dependency, RAW_POM_EXTENSION);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Files.exists(rawPomPath) ? DataProcessor.getPom(rawPomPath.toUri().toURL()) : null;
+                } catch (IOException e) {
+                    logger.warn("Failed to read cached POM {}: {}", rawPomPath, e.getMessage());
+                    return null;
+                }
+            }, executorService).thenCompose(cached -> {
+                if (cached != null) {
+                    return CompletableFuture.completedFuture(cached);
+                }
+
+                logger.trace("Downloading {} POM", dependency);
+                return locator.locate(dependency, "pom", session.getRepositories(), ArtifactLocator.POM_FETCHER).thenApplyAsync(located -> {
+                    if (located == null) {
+                        return null;
+                    }
+
+                    try {
+                        DataProcessor.writeModel(rawPomPath, located.getValue(), false);
+                    } catch (IOException e) {
+                        logger.warn("Failed to cache {} POM: {}", dependency, e.getMessage());
+                    }
+                    return located.getValue();
+                }, executorService);
+            });
+        });
+    }
+
+    @NonNull
+    private CompletableFuture<List<Model>> getLineage(@NonNull Model model, @NonNull List<Model> lineage) {
+        lineage.add(model);
+        Parent parent = model.getParent();
+        if (parent == null) {
+            return CompletableFuture.completedFuture(lineage);
+        }
+
+        if (parent.getGroupId() == null || parent.getArtifactId() == null || parent.getVersion() == null || lineage.size() > MAX_PARENT_DEPTH) {
+            logger.warn("{} parent POM {} is invalid", model.getId(), parent.getId());
+            return CompletableFuture.completedFuture(lineage);
+        }
+
+        // Parent might be only available from repositories declared by the child
+        for (Repository repository : model.getRepositories()) {
+            try {
+                session.addRepository(new URL(repository.getUrl()));
+            } catch (MalformedURLException e) {
+                // Will be interpolated later
+            }
+        }
+
+        Dependency parentDependency = new Dependency(parent.getGroupId(), parent.getArtifactId(), parent.getVersion(),
+                null, false, Collections.emptyList());
+        return getRawModel(parentDependency).thenCompose(parentModel -> {
+            if (parentModel == null) {
+                logger.warn("{} parent POM {} was not found", model.getId(), parent.getId());
+                return CompletableFuture.completedFuture(lineage);
+            }
+            return getLineage(parentModel, lineage);
+        });
+    }
+
+    @NonNull
+    private Model buildEffectiveModel(@NonNull Dependency dependency, @NonNull List<Model> lineage) {
+        Model model = lineage.get(0);
+        Model effective = new Model();
+        effective.setModelVersion(model.getModelVersion());
+        effective.setModelEncoding(model.getModelEncoding());
+        effective.setGroupId(model.getGroupId() != null ? model.getGroupId() :
+                model.getParent() != null ? model.getParent().getGroupId() : dependency.getGroupId());
+        effective.setArtifactId(model.getArtifactId() != null ? model.getArtifactId() : dependency.getArtifactId());
+        effective.setVersion(model.getVersion() != null ? model.getVersion() :
+                model.getParent() != null ? model.getParent().getVersion() : dependency.getVersion());
+        effective.setPackaging(model.getPackaging());
+
+        // Properties, children override parents
+        Map<String, String> properties = new HashMap<>();
+        for (int i = lineage.size() - 1; i >= 0; i--) {
+            for (String name : lineage.get(i).getProperties().stringPropertyNames()) {
+                properties.put(name, lineage.get(i).getProperties().getProperty(name));
+            }
+        }
+        for (String prefix : new String[]{"project.", "pom."}) {
+            properties.put(prefix + "groupId", effective.getGroupId());
+            properties.put(prefix + "artifactId", effective.getArtifactId());
+            properties.put(prefix + "version", effective.getVersion());
+        }
+        if (model.getParent() != null) {
+            for (String prefix : new String[]{"project.parent.", "parent."}) {
+                properties.put(prefix + "groupId", model.getParent().getGroupId());
+                properties.put(prefix + "artifactId", model.getParent().getArtifactId());
+                properties.put(prefix + "version", model.getParent().getVersion());
+            }
+        }
+
+        // Inherit dependencies, dependency management and repositories
+        Map<String, org.apache.maven.model.Dependency> dependencies = new LinkedHashMap<>();
+        Map<String, org.apache.maven.model.Dependency> managedDependencies = new LinkedHashMap<>();
+        Map<String, Repository> repositories = new LinkedHashMap<>();
+        for (Model current : lineage) {
+            for (org.apache.maven.model.Dependency modelDependency : current.getDependencies()) {
+                org.apache.maven.model.Dependency interpolated = interpolate(modelDependency, properties);
+                dependencies.putIfAbsent(managementKey(interpolated), interpolated);
+            }
+            if (current.getDependencyManagement() != null) {
+                for (org.apache.maven.model.Dependency managedDependency : current.getDependencyManagement().getDependencies()) {
+                    org.apache.maven.model.Dependency interpolated = interpolate(managedDependency, properties);
+                    managedDependencies.putIfAbsent(managementKey(interpolated), interpolated);
+                }
+            }
+            for (Repository repository : current.getRepositories()) {
+                Repository interpolated = repository.clone();
+                interpolated.setUrl(interpolate(repository.getUrl(), properties));
+                repositories.putIfAbsent(interpolated.getUrl(), interpolated);
+            }
+        }
+
+        effective.setDependencies(new ArrayList<>(dependencies.values()));
+        if (!managedDependencies.isEmpty()) {
+            DependencyManagement dependencyManagement = new DependencyManagement();
+            dependencyManagement.setDependencies(new ArrayList<>(managedDependencies.values()));
+            effective.setDependencyManagement(dependencyManagement);
+        }
+        effective.setRepositories(new ArrayList<>(repositories.values()));
+        return effective;
+    }
+
+    /**
+     * Replaces BOM imports in effective model's dependency management with BOMs' managed dependencies.
+     * Dependencies managed directly by the model take precedence, then BOMs in the order of import
+     *
+     * @param dependency Dependency which given model belongs to
+     * @param effective Effective model
+     * @param importChain Keys of BOMs which are being imported
+     * @return Future of given effective model
+     */
+    @NonNull
+    private CompletableFuture<Model> importDependencyManagement(@NonNull Dependency dependency, @NonNull Model effective,
+                                                                @NonNull Set<String> importChain) {
+        DependencyManagement dependencyManagement = effective.getDependencyManagement();
+        if (dependencyManagement == null) {
+            return CompletableFuture.completedFuture(effective);
+        }
+
+        List<org.apache.maven.model.Dependency> managedDependencies = new ArrayList<>();
+        List<CompletableFuture<Model>> imports = new ArrayList<>();
+        for (org.apache.maven.model.Dependency managed : dependencyManagement.getDependencies()) {
+            if (!"import".equals(managed.getScope()) || !"pom".equals(managed.getType())) {
+                managedDependencies.add(managed);
+                continue;
+            }
+
+            if (managed.getGroupId() == null || managed.getArtifactId() == null || managed.getVersion() == null
+                    || managed.getVersion().contains("${")) {
+                logger.warn("{} imports invalid BOM {}", dependency, managed);
+                continue;
+            }
+
+            Dependency bom = new Dependency(managed.getGroupId(), managed.getArtifactId(), managed.getVersion(),
+                    null, false, Collections.emptyList());
+            if (importChain.contains(DownloadSession.key(bom))) {
+                logger.warn("{} BOM import cycle detected at {}", dependency, bom);
+                continue;
+            }
+            imports.add(getImportedModel(bom, importChain));
+        }
+
+        if (imports.isEmpty()) {
+            return CompletableFuture.completedFuture(effective);
+        }
+
+        return TaskUtils.waitForAll(imports).thenApply(v -> {
+            Map<String, org.apache.maven.model.Dependency> merged = new LinkedHashMap<>();
+            for (org.apache.maven.model.Dependency managed : managedDependencies) {
+                merged.put(managementKey(managed), managed);
+            }
+            for (CompletableFuture<Model> future : imports) {
+                Model bom = future.join();
+                if (bom == null || bom.getDependencyManagement() == null) {
+                    continue;
+                }
+                for (org.apache.maven.model.Dependency managed : bom.getDependencyManagement().getDependencies()) {
+                    merged.putIfAbsent(managementKey(managed), managed.clone());
+                }
+            }
+
+            dependencyManagement.setDependencies(new ArrayList<>(merged.values()));
+            return effective;
+        });
+    }
+
+    @NonNull
+    private static Model applyDependencyManagement(@NonNull Model effective) {
+        if (effective.getDependencyManagement() == null) {
+            return effective;
+        }
+
+        Map<String, org.apache.maven.model.Dependency> managedDependencies = new HashMap<>();
+        for (org.apache.maven.model.Dependency managed : effective.getDependencyManagement().getDependencies()) {
+            managedDependencies.putIfAbsent(managementKey(managed), managed);
+        }
+
+        for (org.apache.maven.model.Dependency modelDependency : effective.getDependencies()) {
+            org.apache.maven.model.Dependency managed = managedDependencies.get(managementKey(modelDependency));
+            if (managed == null) {
+                continue;
+            }
+            if (modelDependency.getVersion() == null) {
+                modelDependency.setVersion(managed.getVersion());
+            }
+            if (modelDependency.getScope() == null) {
+                modelDependency.setScope(managed.getScope());
+            }
+            if (modelDependency.getExclusions().isEmpty()) {
+                for (Exclusion exclusion : managed.getExclusions()) {
+                    modelDependency.addExclusion(exclusion.clone());
+                }
+            }
+        }
+        return effective;
+    }
+
+    private static org.apache.maven.model.Dependency interpolate(org.apache.maven.model.Dependency dependency,
+                                                                 @NonNull Map<String, String> properties) {
+        org.apache.maven.model.Dependency interpolated = dependency.clone();
+        interpolated.setGroupId(interpolate(dependency.getGroupId(), properties));
+        interpolated.setArtifactId(interpolate(dependency.getArtifactId(), properties));
+        interpolated.setVersion(interpolate(dependency.getVersion(), properties));
+        interpolated.setClassifier(interpolate(dependency.getClassifier(), properties));
+        interpolated.setType(interpolate(dependency.getType(), properties));
+        interpolated.setScope(interpolate(dependency.getScope(), properties));
+        interpolated.setOptional(interpolate(dependency.getOptional(), properties));
+        return interpolated;
+    }
+
+    /**
+     * Replaces {@code ${property}} references in given value. Unknown properties are left as they are.
+     *
+     * @param value Value to interpolate
+     * @param properties Known properties
+     * @return Interpolated value
+     */
+    @Nullable
+    static String interpolate(@Nullable String value, @NonNull Map<String, String> properties) {
+        for (int i = 0; value != null && value.contains("${") && i < MAX_INTERPOLATION_DEPTH; i++) {
+            Matcher matcher = PROPERTY_PATTERN.matcher(value);
+            StringBuffer sb = new StringBuffer();
+            boolean replaced = false;
+            while (matcher.find()) {
+                String replacement = properties.get(matcher.group(1));
+                if (replacement != null) {
+                    replaced = true;
+                }
+                matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement != null ? replacement : matcher.group()));
+            }
+            matcher.appendTail(sb);
+            value = sb.toString();
+
+            if (!replaced) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static String managementKey(org.apache.maven.model.Dependency dependency) {
+        return dependency.getGroupId() + ':' + dependency.getArtifactId() + ':' + dependency.getType() + ':'
+                + (dependency.getClassifier() != null ? dependency.getClassifier() : "");
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.ArtifactChecksum;
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.artifact.Exclusion;
+import eu.mikroskeem.picomaven.internal.FileUtils;
+import eu.mikroskeem.picomaven.internal.StreamUtils;
+import eu.mikroskeem.picomaven.internal.UrlUtils;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores fully resolved and downloaded {@link DependencyGraph}, so warm starts don't need to
+ * resolve anything. Lockfile is a plain tab separated text file:
+ *
+ * <pre>
+ * picomaven-lock  3
+ * request         groupId:artifactId:version:classifier  transitive
+ * strategy        NEAREST
+ * exclude         groupId:artifactId
+ * node            groupId  artifactId  version  classifier  type  optional  size  mtime  sha256  path
+ * edge            from  to
+ * root            node
+ * </pre>
+ *
+ * Requests, strategy and exclusions must match current configuration for the lockfile to be used.
+ * Nodes without an artifact (see {@link DependencyNode#hasArtifact()}) have {@code -} as size, modification time, digest and path.
+ *
+ * @author Mark Vainomaa
+ */
+final class Lockfile {
+    private static final Logger logger = LoggerFactory.getLogger(Lockfile.class);
+    private static final String HEADER = "picomaven-lock";
+    private static final int FORMAT_VERSION = 3;
+    private static final String NONE = "-";
+
+    private final Path lockfilePath;
+    private final Path downloadPath;
+    private final boolean verifyDigests;
+    private final List<String> configuration;
+
+    Lockfile(@NonNull Path lockfilePath, @NonNull Path downloadPath, boolean verifyDigests, @NonNull List<Dependency> dependencies,
+             @NonNull ConflictStrategy conflictStrategy, @NonNull List<Exclusion> exclusions) {
+        this.lockfilePath = lockfilePath;
+        this.downloadPath = downloadPath;
+        this.verifyDigests = verifyDigests;
+
+        List<String> configuration = new ArrayList<>();
+        configuration.add(HEADER + '\t' + FORMAT_VERSION);
+        for (Dependency dependency : dependencies) {
+            configuration.add("request\t" + DownloadSession.key(dependency) + '\t' + dependency.isTransitive());
+        }
+        configuration.add("strategy\t" + conflictStrategy.name());
+        for (Exclusion exclusion : exclusions) {
+            configuration.add("exclude\t" + exclusion.getGroupId() + ':' + exclusion.getArtifactId());
+        }
+        this.configuration = Collections.unmodifiableList(configuration);
+    }
+
+    /**
+     * Reads locked dependency graph. Artifacts are checked to exist and to have the recorded size and modification time,
+     * and if digest verification is enabled, also the recorded SHA-256 digest.
+     *
+     * @param dependencies Requested dependencies, used as graph roots
+     * @return Locked {@link DependencyGraph}, or {@code null} if lockfile is missing, outdated
+     * or any of the artifacts has changed
+     */
+    @Nullable
+    DependencyGraph read(@NonNull List<Dependency> dependencies) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(lockfilePath, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to read lockfile {}: {}", lockfilePath, e.getMessage());
+            return null;
+        }
+
+        if (lines.size() < configuration.size() || !lines.subList(0, configuration.size()).equals(configuration)) {
+            logger.debug("Lockfile {} does not match requested dependencies", lockfilePath);
+            return null;
+        }
+
+        try {
+            Map<String, Dependency> requested = new HashMap<>();
+            for (Dependency dependency : dependencies) {
+                requested.putIfAbsent(DownloadSession.key(dependency), dependency);
+            }
+
+            List<DependencyNode> nodes = new ArrayList<>();
+            List<DependencyNode> roots = new ArrayList<>(dependencies.size());
+            for (String line : lines.subList(configuration.size(), lines.size())) {
+                String[] parts = line.split("\t");
+                switch (parts[0]) {
+                    case "node":
+                        Dependency dependency = new Dependency(parts[1], parts[2], parts[3],
+                                NONE.equals(parts[4]) ? null : parts[4], true, Collections.emptyList());
+                        DependencyNode node = new DependencyNode(requested.getOrDefault(DownloadSession.key(dependency), dependency),
+                                Boolean.parseBoolean(parts[6]), parts[5], Collections.emptyList());
+                        if (node.hasArtifact()) {
+                            Path artifactPath = downloadPath.resolve(parts[10]);
+                            if (Files.notExists(artifactPath) || Files.size(artifactPath) != Long.parseLong(parts[7])
+                                    || Files.getLastModifiedTime(artifactPath).toMillis() != Long.parseLong(parts[8])
+                                    || (verifyDigests && !digest(artifactPath).equals(parts[9]))) {
+                                logger.debug("Locked artifact {} is missing or has changed", artifactPath);
+                                return null;
+                            }
+                        }
+                        nodes.add(node);
+                        break;
+                    case "edge":
+                        nodes.get(Integer.parseInt(parts[1])).addChild(nodes.get(Integer.parseInt(parts[2])));
+                        break;
+                    case "root":
+                        roots.add(nodes.get(Integer.parseInt(parts[1])));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown entry '" + parts[0] + "'");
+                }
+            }
+            return new DependencyGraph(roots, nodes, true);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Lockfile {} is invalid: {}", lockfilePath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes given dependency graph into the lockfile. Nodes which artifacts are not downloaded are left out,
+     * and if any of those is not optional, then nothing is written.
+     *
+     * @param graph Resolved and downloaded dependency graph
+     * @throws IOException If lockfile writing fails
+     */
+    void write(@NonNull DependencyGraph graph) throws IOException {
+        Map<DependencyNode, Integer> indexes = new HashMap<>();
+        List<String> lines = new ArrayList<>(configuration);
+        for (DependencyNode node : graph.getNodes()) {
+            Dependency dependency = node.getDependency();
+            String prefix = "node\t" + dependency.getGroupId() + '\t' + dependency.getArtifactId() + '\t' + dependency.getVersion()
+                    + '\t' + (dependency.getClassifier() != null ? dependency.getClassifier() : NONE) + '\t' + node.getType()
+                    + '\t' + node.isOptional();
+            if (!node.hasArtifact()) {
+                indexes.put(node, indexes.size());
+                lines.add(prefix + '\t' + NONE + '\t' + NONE + '\t' + NONE + '\t' + NONE);
+                continue;
+            }
+
+            Path artifactPath = UrlUtils.formatLocalPath(downloadPath, dependency, "jar");
+            if (Files.notExists(artifactPath)) {
+                if (!node.isOptional()) {
+                    logger.debug("Not writing lockfile, {} is not downloaded", dependency);
+                    return;
+                }
+                continue;
+            }
+
+            indexes.put(node, indexes.size());
+            lines.add(prefix + '\t' + Files.size(artifactPath) + '\t' + Files.getLastModifiedTime(artifactPath).toMillis()
+                    + '\t' + digest(artifactPath)
+                    + '\t' + downloadPath.relativize(artifactPath).toString().replace('\\', '/'));
+        }
+
+        for (DependencyNode node : graph.getNodes()) {
+            Integer from = indexes.get(node);
+            if (from == null) {
+                continue;
+            }
+            for (DependencyNode child : node.getChildren()) {
+                Integer to = indexes.get(child);
+                if (to != null) {
+                    lines.add("edge\t" + from + '\t' + to);
+                }
+            }
+        }
+
+        for (DependencyNode root : graph.getRoots()) {
+            Integer index = indexes.get(root);
+            if (index == null) {
+                logger.debug("Not writing lockfile, {} is not downloaded", root.getDependency());
+                return;
+            }
+            lines.add("root\t" + index);
+        }
+
+        Path temporary = FileUtils.getTemporaryFileName(lockfilePath);
+        Files.createDirectories(lockfilePath.toAbsolutePath().getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        Files.move(temporary, lockfilePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @NonNull
+    private static String digest(@NonNull Path file) throws IOException {
+        MessageDigest md = ArtifactChecksum.ChecksumAlgo.SHA256.getMessageDigest();
+        try (InputStream is = Files.newInputStream(file)) {
+            StreamUtils.digest(is, md);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.internal.UrlUtils;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers which repositories don't have an artifact, so they're not asked again. Entries are kept in memory
+ * for the lifetime of {@link PicoMaven} instance, and on the disk if TTL is set. On-disk entries are stored in
+ * Maven-like {@code <artifact>.lastUpdated} files next to where artifact would be downloaded.
+ *
+ * @author Mark Vainomaa
+ */
+final class NegativeCache {
+    private static final Logger logger = LoggerFactory.getLogger(NegativeCache.class);
+    private static final String SUFFIX = ".lastUpdated";
+
+    private final Path downloadPath;
+    private final Duration ttl;
+    private final ConcurrentMap<String, Long> missing = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, Boolean> loaded = new ConcurrentHashMap<>();
+
+    NegativeCache(@NonNull Path downloadPath, @Nullable Duration ttl) {
+        this.downloadPath = downloadPath;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns whether given artifact is known to be missing from given repository
+     *
+     * @param repository Repository URL
+     * @param dependency Dependency
+     * @param ext Artifact extension
+     * @return Whether artifact is known to be missing
+     */
+    boolean isMissing(@NonNull URL repository, @NonNull Dependency dependency, @NonNull String ext) {
+        Path path = getPath(dependency, ext);
+        if (ttl != null) {
+            // Concurrent lookups of the same artifact wait until its file is loaded
+            loaded.computeIfAbsent(path, this::load);
+        }
+
+        Long missingSince = missing.get(key(path, repository));
+        if (missingSince == null) {
+            return false;
+        }
+        return ttl == null || missingSince + ttl.toMillis() > System.currentTimeMillis();
+    }
+
+    /**
+     * Remembers that given artifact is missing from given repository
+     *
+     * @param repository Repository URL
+     * @param dependency Dependency
+     * @param ext Artifact extension
+     */
+    void markMissing(@NonNull URL repository, @NonNull Dependency dependency, @NonNull String ext) {
+        Path path = getPath(dependency, ext);
+        long now = System.currentTimeMillis();
+        missing.put(key(path, repository), now);
+        if (ttl != null) {
+            store(path, repository, now);
+        }
+    }
+
+    @NonNull
+    private Boolean load(@NonNull Path path) {
+        Path file = path.resolveSibling(path.getFileName() + SUFFIX);
+        if (Files.notExists(file)) {
+            return Boolean.FALSE;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        } catch (IOException e) {
+            logger.warn("Failed to read negative cache {}: {}", file, e.getMessage());
+            return Boolean.FALSE;
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.endsWith(SUFFIX)) {
+                continue;
+            }
+            try {
+                String repository = name.substring(0, name.length() - SUFFIX.length());
+                missing.putIfAbsent(path + "@" + repository, Long.parseLong(properties.getProperty(name)));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return Boolean.TRUE;
+    }
+
+    private synchronized void store(@NonNull Path path, @NonNull URL repository, long missingSince) {
+        Path file = path.resolveSibling(path.getFileName() + SUFFIX);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Properties properties = new Properties();
+            if (Files.exists(file)) {
+                try (InputStream is = Files.newInputStream(file)) {
+                    properties.load(is);
+                }
+            }
+            properties.setProperty(repository.toExternalForm() + SUFFIX, Long.toString(missingSince));
+
+            Files.createDirectories(file.getParent());
+            try (OutputStream os = Files.newOutputStream(temporary)) {
+                properties.store(os, "PicoMaven negative lookup cache");
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Failed to write negative cache {}: {}", file, e.getMessage());
+        }
+    }
+
+    @NonNull
+    private Path getPath(@NonNull Dependency dependency, @NonNull String ext) {
+        return UrlUtils.formatLocalPath(downloadPath, dependency, ext);
+    }
+
+    @NonNull
+    private static String key(@NonNull Path path, @NonNull URL repository) {
+        return path + "@" + repository.toExternalForm();
+    }
+}
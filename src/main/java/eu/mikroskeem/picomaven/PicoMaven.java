@@ -25,30 +25,45 @@
 
 package eu.mikroskeem.picomaven;
 
-import eu.mikroskeem.picomaven.artifact.ArtifactChecksum;
 import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.artifact.Exclusion;
 import eu.mikroskeem.picomaven.artifact.TransitiveDependencyProcessor;
 import eu.mikroskeem.picomaven.internal.SneakyThrow;
 import eu.mikroskeem.picomaven.internal.TaskUtils;
+import eu.mikroskeem.picomaven.internal.UrlUtils;
+import eu.mikroskeem.picomaven.transport.CircuitBreakerTransport;
+import eu.mikroskeem.picomaven.transport.ConcurrencyLimitingTransport;
+import eu.mikroskeem.picomaven.transport.RepositoryHealth;
+import eu.mikroskeem.picomaven.transport.RetryPolicy;
+import eu.mikroskeem.picomaven.transport.RetryingTransport;
+import eu.mikroskeem.picomaven.transport.Transport;
+import eu.mikroskeem.picomaven.transport.Transports;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -58,10 +73,11 @@ import java.util.stream.Collectors;
  */
 public class PicoMaven implements Closeable {
     private static final Logger logger = LoggerFactory.getLogger(PicoMaven.class);
-    static final ArtifactChecksum.ChecksumAlgo[] REMOTE_CHECKSUM_ALGOS = new ArtifactChecksum.ChecksumAlgo[]{
-            ArtifactChecksum.ChecksumAlgo.MD5,
-            ArtifactChecksum.ChecksumAlgo.SHA1
-    };
+    static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+    static final int DEFAULT_MAX_REQUESTS_PER_HOST = 16;
+    static final int DEFAULT_BREAKER_FAILURE_THRESHOLD = 3;
+    static final Duration DEFAULT_BREAKER_COOLDOWN = Duration.ofSeconds(30);
 
     private final Path downloadPath;
     private final List<Dependency> dependencyList;
@@ -69,13 +85,52 @@ public class PicoMaven implements Closeable {
     private final ExecutorService executorService;
     private final boolean shouldCloseExecutorService;
     private final List<TransitiveDependencyProcessor> transitiveDependencyProcessors;
-    private final List<CompletableFuture<DownloadResult>> downloadTasks;
+    private final ConflictStrategy conflictStrategy;
+    private final List<Exclusion> exclusions;
+    private final Lockfile lockfile;
+    private final VersionResolver versionResolver;
+    private final List<CompletableFuture<?>> downloadTasks;
+    private final DownloadSession session;
+    private final Transport upstreamTransport;
+    private final boolean shouldCloseTransport;
+    private final SessionTransport transport;
+    private final CircuitBreakerTransport circuitBreaker;
+    private final RepositoryRouter router;
+    private final RepositoryStats repositoryStats;
+    private final ChecksumPolicy checksumPolicy;
+    private final ArtifactLocator locator;
+    private final Duration deadline;
+    private final AtomicBoolean deadlineStarted = new AtomicBoolean(false);
+    private volatile ScheduledExecutorService deadlineScheduler = null;
 
+    /**
+     * Resolves and downloads all configured dependencies. This is equivalent to calling {@link #resolve()}
+     * and {@link #download(DependencyGraph)} one after another, except that with {@link ConflictStrategy#NEAREST}
+     * artifacts start downloading as soon as their nodes are selected, while the rest of the graph is still resolving.
+     *
+     * @return Map of requested dependencies and their download result futures
+     */
     public Map<@NonNull Dependency, @NonNull CompletableFuture<@Nullable DownloadResult>> downloadAllArtifacts() {
+        // Start downloading artifacts as soon as their POMs are processed, instead of waiting for the whole graph
+        CompletableFuture<List<CompletableFuture<DownloadResult>>> rootDownloads = resolve(this::prefetch).thenApply(graph -> {
+            Map<DependencyNode, CompletableFuture<DownloadResult>> results = downloadGraph(graph);
+            List<CompletableFuture<DownloadResult>> roots = new ArrayList<>(graph.getRoots().size());
+            for (DependencyNode root : graph.getRoots()) {
+                roots.add(results.get(root));
+            }
+            if (lockfile != null && !graph.isLocked()) {
+                writeLockfile(graph, roots);
+            }
+            return roots;
+        });
+
         Map<Dependency, CompletableFuture<DownloadResult>> tasks = new LinkedHashMap<>(dependencyList.size());
-        for (final Dependency dependency : dependencyList) {
-            DownloaderTask task = new DownloaderTask(executorService, dependency, downloadPath, repositoryUrls, transitiveDependencyProcessors);
-            CompletableFuture<DownloadResult> future = CompletableFuture.supplyAsync(task, executorService);
+        for (int i = 0; i < dependencyList.size(); i++) {
+            final int index = i;
+            final Dependency dependency = dependencyList.get(i);
+            CompletableFuture<DownloadResult> future = rootDownloads.thenCompose(roots -> roots.get(index)).exceptionally(e ->
+                    DownloadResult.ofFailure(dependency, UrlUtils.formatLocalPath(downloadPath, dependency, "jar"),
+                            false, TaskUtils.unwrapException(e)));
             tasks.put(dependency, future);
             this.downloadTasks.add(future);
         }
@@ -84,11 +139,226 @@ public class PicoMaven implements Closeable {
     }
 
     /**
-     * Waits until all downloads are completed and shuts down {@link ExecutorService} if configured to do so
+     * Resolves dependency graph of all configured dependencies. Only POMs are fetched and
+     * processed, artifacts are downloaded using {@link #download(DependencyGraph)}.
+     *
+     * @return Future of resolved {@link DependencyGraph}
+     */
+    @NonNull
+    public CompletableFuture<@NonNull DependencyGraph> resolve() {
+        return resolve(null);
+    }
+
+    @NonNull
+    private CompletableFuture<@NonNull DependencyGraph> resolve(@Nullable Consumer<DependencyNode> nodeListener) {
+        startDeadline();
+        CompletableFuture<DependencyGraph> locked = lockfile != null
+                ? CompletableFuture.supplyAsync(() -> lockfile.read(dependencyList), executorService)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<DependencyGraph> future = locked.thenCompose(graph -> {
+            if (graph != null) {
+                logger.debug("Using locked dependency graph");
+                return CompletableFuture.completedFuture(graph);
+            }
+
+            DependencyResolver resolver = new DependencyResolver(session, executorService, locator, downloadPath,
+                    transitiveDependencyProcessors, conflictStrategy, exclusions, versionResolver, nodeListener);
+            return resolver.resolve(dependencyList);
+        });
+        this.downloadTasks.add(future);
+        return future;
+    }
+
+    /**
+     * Downloads all artifacts in given dependency graph as one parallel batch
+     *
+     * @param graph Dependency graph, see {@link #resolve()}
+     * @return Map of graph root dependencies and their download result futures
+     */
+    @NonNull
+    public Map<@NonNull Dependency, @NonNull CompletableFuture<@Nullable DownloadResult>> download(@NonNull DependencyGraph graph) {
+        startDeadline();
+        Map<DependencyNode, CompletableFuture<DownloadResult>> results = downloadGraph(graph);
+        Map<Dependency, CompletableFuture<DownloadResult>> tasks = new LinkedHashMap<>(graph.getRoots().size());
+        for (DependencyNode root : graph.getRoots()) {
+            CompletableFuture<DownloadResult> future = results.get(root);
+            tasks.put(root.getDependency(), future);
+            this.downloadTasks.add(future);
+        }
+        return Collections.unmodifiableMap(tasks);
+    }
+
+    /**
+     * Gets health of all repositories known to this instance, including ones referenced by POMs and routes
+     *
+     * @return Map of repository URLs in {@link URL#toExternalForm()} format and their health
+     */
+    @NonNull
+    public Map<@NonNull String, @NonNull RepositoryHealth> getRepositoryHealth() {
+        Map<String, RepositoryHealth> health = new LinkedHashMap<>();
+        List<URL> repositories = new ArrayList<>(session.getRepositories());
+        repositories.addAll(router.getRepositories());
+        for (URL repository : repositories) {
+            health.computeIfAbsent(repository.toExternalForm(), k -> circuitBreaker.getHealth(repository));
+        }
+        return Collections.unmodifiableMap(health);
+    }
+
+    @NonNull
+    private Map<DependencyNode, CompletableFuture<DownloadResult>> downloadGraph(@NonNull DependencyGraph graph) {
+        // Start all artifact downloads at once
+        Map<DependencyNode, CompletableFuture<DownloadResult>> artifacts = new HashMap<>(graph.getNodes().size());
+        for (DependencyNode node : graph.getNodes()) {
+            if (!node.hasArtifact()) {
+                // Only dependencies of POM type dependencies are relevant
+                artifacts.put(node, CompletableFuture.completedFuture(DownloadResult.ofSuccess(node.getDependency(),
+                        UrlUtils.formatLocalPath(downloadPath, node.getDependency(), "pom"), node.isOptional(),
+                        Collections.emptyList())));
+                continue;
+            }
+
+            artifacts.put(node, downloadArtifact(node));
+        }
+
+        // Assemble results as artifacts get downloaded
+        Map<DependencyNode, CompletableFuture<DownloadResult>> results = new HashMap<>(graph.getNodes().size());
+        for (DependencyNode node : graph.getNodes()) {
+            collectResult(node, artifacts, results);
+        }
+        return results;
+    }
+
+    /**
+     * Starts downloading artifact of a node which is known to be part of the final graph. Node's own POM
+     * may still be in flight
+     *
+     * @param node Selected node
+     */
+    private void prefetch(@NonNull DependencyNode node) {
+        if (node.hasArtifact()) {
+            logger.trace("Starting {} download while resolution continues", node.getDependency());
+            this.downloadTasks.add(downloadArtifact(node));
+        }
+    }
+
+    @NonNull
+    private CompletableFuture<DownloadResult> downloadArtifact(@NonNull DependencyNode node) {
+        // Shared with download started earlier, if any
+        DownloaderTask task = new DownloaderTask(session, executorService, locator, transport, node, downloadPath, checksumPolicy);
+        return session.download(node.getDependency(), task::download);
+    }
+
+    private void startDeadline() {
+        if (deadline == null || !deadlineStarted.compareAndSet(false, true)) {
+            return;
+        }
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PicoMaven deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.schedule(() -> {
+            logger.warn("Resolution deadline of {} exceeded, aborting all requests", deadline);
+            transport.abort(new TimeoutException("Resolution deadline of " + deadline + " exceeded"));
+        }, deadline.toMillis(), TimeUnit.MILLISECONDS);
+        this.deadlineScheduler = scheduler;
+    }
+
+    private void writeLockfile(@NonNull DependencyGraph graph, @NonNull List<CompletableFuture<DownloadResult>> roots) {
+        CompletableFuture<Void> future = TaskUtils.waitForAll(roots).thenRunAsync(() -> {
+            for (CompletableFuture<DownloadResult> root : roots) {
+                if (!root.join().isSuccess()) {
+                    return;
+                }
+            }
+
+            try {
+                lockfile.write(graph);
+            } catch (IOException e) {
+                logger.warn("Failed to write lockfile: {}", e.getMessage());
+            }
+        }, executorService);
+        this.downloadTasks.add(future);
+    }
+
+    @NonNull
+    private static CompletableFuture<DownloadResult> collectResult(@NonNull DependencyNode node,
+                                                                   @NonNull Map<DependencyNode, CompletableFuture<DownloadResult>> artifacts,
+                                                                   @NonNull Map<DependencyNode, CompletableFuture<DownloadResult>> results) {
+        CompletableFuture<DownloadResult> result = results.get(node);
+        if (result != null) {
+            return result;
+        }
+
+        List<CompletableFuture<DownloadResult>> children = new ArrayList<>(node.getChildren().size());
+        for (DependencyNode child : node.getChildren()) {
+            children.add(collectResult(child, artifacts, results));
+        }
+
+        result = artifacts.get(node).thenCombine(TaskUtils.waitForAll(children), (artifact, v) -> {
+            if (!artifact.isSuccess()) {
+                return artifact;
+            }
+
+            List<DownloadResult> transitive = new ArrayList<>(children.size());
+            for (int i = 0; i < children.size(); i++) {
+                DownloadResult res = children.get(i).join();
+                if (!node.getChildren().get(i).hasArtifact() && res.isSuccess()) {
+                    // Replace POM type dependency with its dependencies
+                    transitive.addAll(res.getTransitiveDependencies());
+                    continue;
+                }
+                if (!res.isSuccess()) {
+                    if (res.isOptional()) {
+                        continue;
+                    }
+                    logger.trace("Failed to download {}: {}", res.getDependency(), res.getDownloadException().getMessage());
+                }
+                transitive.add(res);
+            }
+            return DownloadResult.ofSuccess(node.getDependency(), artifact.getArtifactPath(), node.isOptional(), transitive,
+                    node.getCycles());
+        });
+        results.put(node, result);
+        return result;
+    }
+
+    /**
+     * Waits until all downloads are completed, closes the default {@link Transport} and shuts down
+     * {@link ExecutorService} if configured to do so
      */
     @Override
     public void close() {
-        TaskUtils.waitForAllUninterruptibly(this.downloadTasks);
+        // Finished tasks may add new ones (e.g lockfile writing), so wait until there are none left
+        int waited = 0;
+        while (true) {
+            List<CompletableFuture<?>> tasks;
+            synchronized (this.downloadTasks) {
+                if (this.downloadTasks.size() == waited) {
+                    break;
+                }
+                tasks = new ArrayList<>(this.downloadTasks.subList(waited, this.downloadTasks.size()));
+            }
+            // Failures are reported through the futures themselves
+            TaskUtils.waitForAllUninterruptibly(tasks.stream()
+                    .map(task -> task.handle((value, e) -> null))
+                    .collect(Collectors.toList()));
+            waited += tasks.size();
+        }
+        if (deadlineScheduler != null) {
+            deadlineScheduler.shutdownNow();
+        }
+        if (repositoryStats != null) {
+            repositoryStats.save();
+        }
+        if (shouldCloseTransport) {
+            try {
+                upstreamTransport.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close transport: {}", e.getMessage());
+            }
+        }
         if (shouldCloseExecutorService) {
             executorService.shutdown();
             try {
@@ -101,14 +371,44 @@ public class PicoMaven implements Closeable {
 
     private PicoMaven(Path downloadPath, List<Dependency> dependencyList, List<URL> repositoryUrls,
                       ExecutorService executorService, boolean shouldCloseExecutorService,
-                      List<TransitiveDependencyProcessor> dependencyProcessors) {
+                      List<TransitiveDependencyProcessor> dependencyProcessors, ConflictStrategy conflictStrategy,
+                      List<Exclusion> exclusions, @Nullable Path lockfilePath, boolean verifyLockedDigests,
+                      @Nullable Duration metadataCacheTtl,
+                      Transport transport, boolean shouldCloseTransport, SessionTransport.Timeouts defaultTimeouts,
+                      Map<String, SessionTransport.Timeouts> repositoryTimeouts, @Nullable Duration deadline,
+                      RetryPolicy retryPolicy, Map<String, RetryPolicy> repositoryRetryPolicies,
+                      int maxRequestsPerRepository, int maxRequestsPerHost,
+                      int breakerFailureThreshold, Duration breakerCooldown, @Nullable Duration negativeCacheTtl,
+                      Map<String, List<URL>> routes, @Nullable Duration hedgeStagger,
+                      @Nullable RepositoryStats repositoryStats, ChecksumPolicy checksumPolicy) {
         this.downloadPath = downloadPath;
         this.dependencyList = dependencyList;
         this.repositoryUrls = repositoryUrls;
         this.executorService = executorService;
         this.shouldCloseExecutorService = shouldCloseExecutorService;
         this.transitiveDependencyProcessors = dependencyProcessors;
-        this.downloadTasks = new ArrayList<>(this.dependencyList.size());
+        this.conflictStrategy = conflictStrategy;
+        this.exclusions = exclusions;
+        this.lockfile = lockfilePath != null
+                ? new Lockfile(lockfilePath, downloadPath, verifyLockedDigests, dependencyList, conflictStrategy, exclusions)
+                : null;
+        this.downloadTasks = Collections.synchronizedList(new ArrayList<>(this.dependencyList.size()));
+        this.repositoryStats = repositoryStats;
+        this.checksumPolicy = checksumPolicy;
+        this.session = new DownloadSession(repositoryUrls, repositoryStats);
+        this.upstreamTransport = transport;
+        this.shouldCloseTransport = shouldCloseTransport;
+        Transport limited = new ConcurrencyLimitingTransport(transport, maxRequestsPerRepository, maxRequestsPerHost);
+        this.circuitBreaker = new CircuitBreakerTransport(limited, breakerFailureThreshold, breakerCooldown);
+        // Circuit breaker takes care of connection failures, retrying them would only multiply connect timeouts
+        RetryingTransport retryingTransport = new RetryingTransport(circuitBreaker, retryPolicy, repositoryRetryPolicies,
+                breakerFailureThreshold == 0);
+        this.transport = new SessionTransport(retryingTransport, defaultTimeouts, repositoryTimeouts);
+        this.deadline = deadline;
+        this.router = new RepositoryRouter(routes);
+        this.locator = new ArtifactLocator(executorService, this.transport, retryingTransport,
+                new NegativeCache(downloadPath, negativeCacheTtl), router, repositoryStats, hedgeStagger);
+        this.versionResolver = new VersionResolver(session, executorService, locator, downloadPath, metadataCacheTtl);
     }
 
     /**
@@ -121,6 +421,28 @@ public class PicoMaven implements Closeable {
         private ExecutorService executorService = null;
         private boolean shouldCloseExecutorService = false;
         private List<TransitiveDependencyProcessor> dependencyProcessors = null;
+        private ConflictStrategy conflictStrategy = ConflictStrategy.NEAREST;
+        private List<Exclusion> exclusions = null;
+        private Path lockfilePath = null;
+        private boolean verifyLockedDigests = false;
+        private Duration metadataCacheTtl = null;
+        private Transport transport = null;
+        private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        private Duration readTimeout = DEFAULT_READ_TIMEOUT;
+        private final Map<String, SessionTransport.Timeouts> repositoryTimeouts = new HashMap<>();
+        private Duration deadline = null;
+        private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+        private final Map<String, RetryPolicy> repositoryRetryPolicies = new HashMap<>();
+        private int maxRequestsPerRepository = 0;
+        private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+        private int breakerFailureThreshold = DEFAULT_BREAKER_FAILURE_THRESHOLD;
+        private Duration breakerCooldown = DEFAULT_BREAKER_COOLDOWN;
+        private Duration negativeCacheTtl = null;
+        private final Map<String, List<URL>> routes = new LinkedHashMap<>();
+        private Duration hedgeStagger = null;
+        private boolean adaptiveRepositoryOrder = false;
+        private Path repositoryStatsPath = null;
+        private ChecksumPolicy checksumPolicy = ChecksumPolicy.DEFAULT;
 
         /**
          * Set download path
@@ -184,6 +506,25 @@ public class PicoMaven implements Closeable {
             return this;
         }
 
+        /**
+         * Route artifacts of given groups only to given repositories. Group pattern is either exact group id, e.g
+         * {@code com.example}, or group id prefix ending with {@code .*}, e.g {@code com.example.*}, which matches
+         * the group and all its subgroups. Most specific pattern wins, and artifacts not matching any route are looked
+         * up from repositories set using {@link #withRepositories(List)}. Repositories used only in routes are never
+         * queried for other artifacts.
+         *
+         * @param groupPattern Group pattern
+         * @param repositories List of repository {@link URI}s
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withRoute(@NonNull String groupPattern, @NonNull List<URI> repositories) {
+            this.routes.put(groupPattern, repositories.stream()
+                    .map(u -> SneakyThrow.get(u::toURL))
+                    .collect(Collectors.toList()));
+            return this;
+        }
+
         /**
          * Set {@link ExecutorService} what to use to launch downloader tasks
          *
@@ -214,6 +555,266 @@ public class PicoMaven implements Closeable {
             return this;
         }
 
+        /**
+         * Set strategy used to pick a version when dependency graph references multiple versions
+         * of the same artifact. Defaults to {@link ConflictStrategy#NEAREST}.
+         *
+         * <p>With {@link ConflictStrategy#HIGHEST}, selected versions are only known once the whole graph
+         * is resolved, so {@link PicoMaven#downloadAllArtifacts()} doesn't download artifacts during resolution.</p>
+         *
+         * @param conflictStrategy {@link ConflictStrategy}
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withConflictStrategy(@NonNull ConflictStrategy conflictStrategy) {
+            this.conflictStrategy = conflictStrategy;
+            return this;
+        }
+
+        /**
+         * Set exclusions which apply to all transitive dependencies. Excluded dependencies and their
+         * dependencies are not resolved nor downloaded
+         *
+         * @param exclusions List of {@link Exclusion}s
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withExclusions(@NonNull List<Exclusion> exclusions) {
+            this.exclusions = Collections.unmodifiableList(new ArrayList<>(exclusions));
+            return this;
+        }
+
+        /**
+         * Set lockfile path. When set, fully downloaded dependency graph is stored into lockfile, and later
+         * {@link #resolve()} calls use it instead of resolving again, as long as requested dependencies match
+         * and locked artifacts are still present with the same size and modification time
+         *
+         * @param lockfilePath Lockfile path
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withLockfile(@NonNull Path lockfilePath) {
+            return withLockfile(lockfilePath, false);
+        }
+
+        /**
+         * Set lockfile path, see {@link #withLockfile(Path)}
+         *
+         * @param lockfilePath Lockfile path
+         * @param verifyDigests Whether to also verify SHA-256 digests of locked artifacts. This reads every locked
+         *                      artifact on each warm start, so it's off by default
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withLockfile(@NonNull Path lockfilePath, boolean verifyDigests) {
+            this.lockfilePath = lockfilePath;
+            this.verifyLockedDigests = verifyDigests;
+            return this;
+        }
+
+        /**
+         * Set how long artifact metadata used to resolve version ranges, {@code LATEST} and {@code RELEASE}
+         * is cached on the disk. By default metadata is cached only for the lifetime of {@link PicoMaven} instance
+         *
+         * @param metadataCacheTtl Metadata cache TTL
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withMetadataCacheTtl(@NonNull Duration metadataCacheTtl) {
+            this.metadataCacheTtl = metadataCacheTtl;
+            return this;
+        }
+
+        /**
+         * Set for how long the knowledge that a repository does not have an artifact is cached on the disk, so
+         * later runs go straight to the repository which has it. By default it's cached only for the lifetime
+         * of {@link PicoMaven} instance
+         *
+         * @param negativeCacheTtl Negative lookup cache TTL
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withNegativeCacheTtl(@NonNull Duration negativeCacheTtl) {
+            this.negativeCacheTtl = negativeCacheTtl;
+            return this;
+        }
+
+        /**
+         * Enable hedged artifact lookup. Instead of trying repositories one after another, artifact existence is
+         * probed from all candidate repositories in parallel, starting next probe after given stagger, and artifact
+         * is fetched from the repository which answers first. Remaining probes are cancelled. Trades some extra
+         * requests for lower latency when artifacts are spread across several repositories
+         *
+         * @param stagger Delay between starting probes, or {@link Duration#ZERO} to probe all repositories at once
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withHedgedLookup(@NonNull Duration stagger) {
+            if (stagger.isNegative()) {
+                throw new IllegalArgumentException("Stagger can't be negative");
+            }
+            this.hedgeStagger = stagger;
+            return this;
+        }
+
+        /**
+         * Enable adaptive repository ordering. Latency and hit ratio of each repository is tracked, and repositories
+         * which are expected to serve artifacts fastest are tried first. By default repositories are tried in
+         * configured order, followed by repositories referenced by POMs
+         *
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withAdaptiveRepositoryOrder() {
+            this.adaptiveRepositoryOrder = true;
+            return this;
+        }
+
+        /**
+         * Enable adaptive repository ordering, and persist repository statistics in given file so that later
+         * runs start with what's already learned. See {@link #withAdaptiveRepositoryOrder()}
+         *
+         * @param repositoryStatsPath Repository statistics file path
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withAdaptiveRepositoryOrder(@NonNull Path repositoryStatsPath) {
+            this.adaptiveRepositoryOrder = true;
+            this.repositoryStatsPath = repositoryStatsPath;
+            return this;
+        }
+
+        /**
+         * Set policy for verifying downloaded artifacts against remote checksums. By default both SHA-1 and
+         * MD5 checksums are verified if repository provides them
+         *
+         * @param checksumPolicy Checksum policy
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withChecksumPolicy(@NonNull ChecksumPolicy checksumPolicy) {
+            this.checksumPolicy = checksumPolicy;
+            return this;
+        }
+
+        /**
+         * Set {@link Transport} used to talk to repositories. By default {@link Transports#createDefault(java.util.concurrent.Executor)}
+         * is used, which picks HTTP/2 capable transport on Java 11+. Given transport is not closed by {@link PicoMaven#close()}
+         *
+         * @param transport Transport
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withTransport(@NonNull Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Set connect and read timeouts used for all repositories. Defaults to 10 seconds connect
+         * and 30 seconds read timeout
+         *
+         * @param connectTimeout Connect timeout, or {@code null} for infinite
+         * @param readTimeout Read timeout, or {@code null} for infinite
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withTimeouts(@Nullable Duration connectTimeout, @Nullable Duration readTimeout) {
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * Set connect and read timeouts for given repository, overriding ones set using {@link #withTimeouts(Duration, Duration)}
+         *
+         * @param repository Repository {@link URI}
+         * @param connectTimeout Connect timeout, or {@code null} for infinite
+         * @param readTimeout Read timeout, or {@code null} for infinite
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withRepositoryTimeouts(@NonNull URI repository, @Nullable Duration connectTimeout,
+                                              @Nullable Duration readTimeout) {
+            this.repositoryTimeouts.put(SneakyThrow.get(repository::toURL).toExternalForm(),
+                    new SessionTransport.Timeouts(connectTimeout, readTimeout));
+            return this;
+        }
+
+        /**
+         * Set deadline for the whole resolution, counted from the first {@link #resolve()} or {@link #download(DependencyGraph)}
+         * call. When deadline passes, all in-flight requests are aborted and outstanding futures fail with
+         * {@link TimeoutException}. By default there's no deadline
+         *
+         * @param deadline Deadline
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withDeadline(@NonNull Duration deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * Set policy used to retry transient failures, e.g connection timeouts and {@code 503} responses.
+         * Artifacts which download fails midway are downloaded again from the start. Failures to connect are only retried
+         * when circuit breaker is disabled, see {@link #withCircuitBreaker(int, Duration)}.
+         * Defaults to {@link RetryPolicy#DEFAULT}, use {@link RetryPolicy#NONE} to disable retrying
+         *
+         * @param retryPolicy Retry policy
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Set retry policy for given repository, overriding one set using {@link #withRetryPolicy(RetryPolicy)}
+         *
+         * @param repository Repository {@link URI}
+         * @param retryPolicy Retry policy
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withRepositoryRetryPolicy(@NonNull URI repository, @NonNull RetryPolicy retryPolicy) {
+            this.repositoryRetryPolicies.put(SneakyThrow.get(repository::toURL).toExternalForm(), retryPolicy);
+            return this;
+        }
+
+        /**
+         * Set maximum number of requests in flight. Requests above the limit are queued until earlier ones finish.
+         * By default there's no limit per repository, and 16 requests per host
+         *
+         * @param maxPerRepository Maximum number of requests in flight per repository, or {@code 0} for unlimited
+         * @param maxPerHost Maximum number of requests in flight per host, or {@code 0} for unlimited
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withConcurrencyLimits(int maxPerRepository, int maxPerHost) {
+            this.maxRequestsPerRepository = maxPerRepository;
+            this.maxRequestsPerHost = maxPerHost;
+            return this;
+        }
+
+        /**
+         * Set circuit breaker parameters. Repository which fails to connect given number of times in a row is skipped
+         * for cooldown period, see {@link PicoMaven#getRepositoryHealth()}. By default repository is skipped for
+         * 30 seconds after 3 consecutive connection failures. While circuit breaker is enabled, connection failures
+         * are not retried, so every request pays the connect timeout only once
+         *
+         * @param failureThreshold Number of consecutive connection failures, or {@code 0} to never skip repositories
+         * @param cooldown For how long repository is skipped
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withCircuitBreaker(int failureThreshold, @NonNull Duration cooldown) {
+            this.breakerFailureThreshold = failureThreshold;
+            this.breakerCooldown = cooldown;
+            return this;
+        }
+
         /**
          * Build {@link PicoMaven} instance
          *
@@ -229,8 +830,18 @@ public class PicoMaven implements Closeable {
                 shouldCloseExecutorService = true;
             }
             if (dependencyProcessors == null) dependencyProcessors = Collections.emptyList();
+            if (exclusions == null) exclusions = Collections.emptyList();
+            // Default transport is owned by PicoMaven, custom one by the caller
+            boolean shouldCloseTransport = transport == null;
             return new PicoMaven(downloadPath, dependencies, new ArrayList<>(repositories),
-                    executorService, shouldCloseExecutorService, dependencyProcessors);
+                    executorService, shouldCloseExecutorService, dependencyProcessors, conflictStrategy,
+                    exclusions, lockfilePath, verifyLockedDigests, metadataCacheTtl,
+                    shouldCloseTransport ? Transports.createDefault(executorService) : transport, shouldCloseTransport,
+                    new SessionTransport.Timeouts(connectTimeout, readTimeout), new HashMap<>(repositoryTimeouts), deadline,
+                    retryPolicy, new HashMap<>(repositoryRetryPolicies), maxRequestsPerRepository, maxRequestsPerHost,
+                    breakerFailureThreshold, breakerCooldown, negativeCacheTtl, new LinkedHashMap<>(routes),
+                    hedgeStagger, adaptiveRepositoryOrder ? new RepositoryStats(repositoryStatsPath) : null,
+                    checksumPolicy);
         }
     }
 }
@@ -0,0 +1,139 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes artifacts to repositories by their group id. Group pattern is either an exact group id
+ * ({@code com.example}), or a group id prefix ending with {@code .*} ({@code com.example.*}), which
+ * matches the group itself and all its subgroups. Most specific matching pattern wins.
+ *
+ * @author Mark Vainomaa
+ */
+final class RepositoryRouter {
+    private final Map<String, List<URL>> routes;
+
+    RepositoryRouter(@NonNull Map<String, List<URL>> routes) {
+        for (String pattern : routes.keySet()) {
+            if (pattern.isEmpty() || pattern.startsWith(".") || (pattern.contains("*") && !pattern.endsWith(".*"))
+                    || pattern.indexOf('*') != pattern.lastIndexOf('*')) {
+                throw new IllegalArgumentException("Invalid group pattern: " + pattern);
+            }
+        }
+        this.routes = Collections.unmodifiableMap(new LinkedHashMap<>(routes));
+    }
+
+    /**
+     * Gets repositories which should be queried for given dependency
+     *
+     * @param dependency Dependency
+     * @param repositories Repositories to use if dependency is not routed anywhere, in preferred order
+     * @return Repositories to query, in order
+     */
+    @NonNull
+    List<URL> route(@NonNull Dependency dependency, @NonNull List<URL> repositories) {
+        List<URL> routed = getRoute(dependency.getGroupId());
+        if (routed == null) {
+            return repositories;
+        }
+
+        // Keep caller's preferred order, e.g repository where POM was found from. URL#equals and URL#hashCode
+        // may resolve host names, so repositories are compared by their string form
+        Map<String, URL> allowed = byExternalForm(routed);
+        Map<String, URL> result = new LinkedHashMap<>(routed.size());
+        for (URL repository : repositories) {
+            String key = repository.toExternalForm();
+            if (allowed.containsKey(key)) {
+                result.putIfAbsent(key, repository);
+            }
+        }
+        for (Map.Entry<String, URL> repository : allowed.entrySet()) {
+            result.putIfAbsent(repository.getKey(), repository.getValue());
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Gets all repositories used by routes
+     *
+     * @return List of distinct repository URLs
+     */
+    @NonNull
+    List<URL> getRepositories() {
+        List<URL> repositories = new ArrayList<>();
+        for (List<URL> routed : routes.values()) {
+            repositories.addAll(routed);
+        }
+        return new ArrayList<>(byExternalForm(repositories).values());
+    }
+
+    @NonNull
+    private static Map<String, URL> byExternalForm(@NonNull List<URL> repositories) {
+        Map<String, URL> result = new LinkedHashMap<>(repositories.size());
+        for (URL repository : repositories) {
+            result.putIfAbsent(repository.toExternalForm(), repository);
+        }
+        return result;
+    }
+
+    @Nullable
+    private List<URL> getRoute(@NonNull String groupId) {
+        List<URL> best = null;
+        int bestLength = -1;
+        for (Map.Entry<String, List<URL>> route : routes.entrySet()) {
+            String pattern = route.getKey();
+            int length;
+            if (pattern.endsWith(".*")) {
+                String prefix = pattern.substring(0, pattern.length() - 2);
+                if (!groupId.equals(prefix) && !groupId.startsWith(prefix + '.')) {
+                    continue;
+                }
+                length = prefix.length();
+            } else if (groupId.equals(pattern)) {
+                // Exact match beats prefix of same length
+                length = pattern.length() + 1;
+            } else {
+                continue;
+            }
+
+            if (length > bestLength) {
+                best = route.getValue();
+                bestLength = length;
+            }
+        }
+        return best;
+    }
+}
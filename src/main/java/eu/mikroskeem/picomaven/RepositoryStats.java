@@ -0,0 +1,216 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks exponentially weighted moving averages of repository latency and hit ratio, and orders repositories
+ * so that the ones which are expected to serve artifacts fastest are tried first. Statistics are optionally
+ * persisted to a properties file, so they carry over to later runs.
+ *
+ * @author Mark Vainomaa
+ */
+final class RepositoryStats {
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryStats.class);
+    private static final double ALPHA = 0.2;
+    private static final double INITIAL_HIT_RATIO = 0.5;
+    private static final double MIN_HIT_RATIO = 0.05;
+    private static final String LATENCY_SUFFIX = ".latency";
+    private static final String HIT_RATIO_SUFFIX = ".hitRatio";
+
+    private final Path statsFile;
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    RepositoryStats(@Nullable Path statsFile) {
+        this.statsFile = statsFile;
+        if (statsFile != null) {
+            load(statsFile);
+        }
+    }
+
+    /**
+     * Records time it took for repository to respond to a request
+     *
+     * @param repository Repository URL
+     * @param latency Time between sending the request and receiving response headers
+     */
+    void recordLatency(@NonNull URL repository, @NonNull Duration latency) {
+        get(repository).recordLatency(latency.toNanos() / 1_000_000.0);
+    }
+
+    /**
+     * Records whether repository had the artifact which was looked up from it
+     *
+     * @param repository Repository URL
+     * @param found Whether artifact was found
+     */
+    void recordLookup(@NonNull URL repository, boolean found) {
+        get(repository).recordLookup(found);
+    }
+
+    /**
+     * Orders given repositories by their expected cost of looking up an artifact, best first. Repositories
+     * without enough statistics keep their relative order
+     *
+     * @param repositories Repositories, in configured order
+     * @return Ordered repositories
+     */
+    @NonNull
+    List<URL> order(@NonNull List<URL> repositories) {
+        // Repositories without latency samples are assumed to be as fast as others on average
+        double totalLatency = 0;
+        int measured = 0;
+        for (URL repository : repositories) {
+            Stats s = stats.get(repository.toExternalForm());
+            double latency = s != null ? s.getLatency() : Double.NaN;
+            if (!Double.isNaN(latency)) {
+                totalLatency += latency;
+                measured++;
+            }
+        }
+        double defaultLatency = measured > 0 ? totalLatency / measured : 0;
+
+        // Keyed by external form, as URL#equals and URL#hashCode may resolve host names
+        Map<String, Double> costs = new HashMap<>();
+        for (URL repository : repositories) {
+            Stats s = stats.get(repository.toExternalForm());
+            double latency = s != null && !Double.isNaN(s.getLatency()) ? s.getLatency() : defaultLatency;
+            double hitRatio = s != null ? s.getHitRatio() : INITIAL_HIT_RATIO;
+            costs.put(repository.toExternalForm(), latency / Math.max(hitRatio, MIN_HIT_RATIO));
+        }
+
+        // Sort is stable, so ties keep configured order
+        List<URL> ordered = new ArrayList<>(repositories);
+        ordered.sort(Comparator.comparing(repository -> costs.get(repository.toExternalForm())));
+        return ordered;
+    }
+
+    /**
+     * Persists statistics, if stats file is set
+     */
+    void save() {
+        if (statsFile == null) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        stats.forEach((repository, s) -> {
+            double latency = s.getLatency();
+            if (!Double.isNaN(latency)) {
+                properties.setProperty(repository + LATENCY_SUFFIX, Double.toString(latency));
+            }
+            properties.setProperty(repository + HIT_RATIO_SUFFIX, Double.toString(s.getHitRatio()));
+        });
+
+        Path temporary = statsFile.resolveSibling(statsFile.getFileName() + ".tmp");
+        try {
+            if (statsFile.getParent() != null) {
+                Files.createDirectories(statsFile.getParent());
+            }
+            try (OutputStream os = Files.newOutputStream(temporary)) {
+                properties.store(os, "PicoMaven repository statistics");
+            }
+            Files.move(temporary, statsFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Failed to write repository statistics {}: {}", statsFile, e.getMessage());
+        }
+    }
+
+    private void load(@NonNull Path file) {
+        if (Files.notExists(file)) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(file)) {
+            properties.load(is);
+        } catch (IOException e) {
+            logger.warn("Failed to read repository statistics {}: {}", file, e.getMessage());
+            return;
+        }
+
+        for (String name : properties.stringPropertyNames()) {
+            try {
+                double value = Double.parseDouble(properties.getProperty(name));
+                if (name.endsWith(LATENCY_SUFFIX)) {
+                    String repository = name.substring(0, name.length() - LATENCY_SUFFIX.length());
+                    stats.computeIfAbsent(repository, k -> new Stats()).latency = value;
+                } else if (name.endsWith(HIT_RATIO_SUFFIX)) {
+                    String repository = name.substring(0, name.length() - HIT_RATIO_SUFFIX.length());
+                    stats.computeIfAbsent(repository, k -> new Stats()).hitRatio = value;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    @NonNull
+    private Stats get(@NonNull URL repository) {
+        return stats.computeIfAbsent(repository.toExternalForm(), k -> new Stats());
+    }
+
+    private static final class Stats {
+        private double latency = Double.NaN;
+        private double hitRatio = INITIAL_HIT_RATIO;
+
+        synchronized void recordLatency(double sample) {
+            latency = Double.isNaN(latency) ? sample : latency + ALPHA * (sample - latency);
+        }
+
+        synchronized void recordLookup(boolean found) {
+            hitRatio += ALPHA * ((found ? 1 : 0) - hitRatio);
+        }
+
+        synchronized double getLatency() {
+            return latency;
+        }
+
+        synchronized double getHitRatio() {
+            return hitRatio;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.transport.ForwardingTransportResponse;
+import eu.mikroskeem.picomaven.transport.Transport;
+import eu.mikroskeem.picomaven.transport.TransportRequest;
+import eu.mikroskeem.picomaven.transport.TransportResponse;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link Transport} decorator used by a single {@link PicoMaven} instance. Applies configured per-repository
+ * timeouts to requests, and keeps track of in-flight requests and open responses so they can be aborted
+ * all at once when resolution deadline passes.
+ *
+ * @author Mark Vainomaa
+ */
+final class SessionTransport implements Transport {
+    private static final Logger logger = LoggerFactory.getLogger(SessionTransport.class);
+
+    private final Transport transport;
+    private final Timeouts defaultTimeouts;
+    private final Map<String, Timeouts> repositoryTimeouts;
+    private final Map<CompletableFuture<TransportResponse>, CompletableFuture<TransportResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Set<TransportResponse> open = ConcurrentHashMap.newKeySet();
+    private final ReadWriteLock abortLock = new ReentrantReadWriteLock();
+    private volatile Throwable abortCause = null;
+
+    SessionTransport(@NonNull Transport transport, @NonNull Timeouts defaultTimeouts,
+                     @NonNull Map<String, Timeouts> repositoryTimeouts) {
+        this.transport = transport;
+        this.defaultTimeouts = defaultTimeouts;
+        this.repositoryTimeouts = repositoryTimeouts;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<@NonNull TransportResponse> execute(@NonNull TransportRequest request) {
+        // Apply timeouts unless request has its own. URL#hashCode may resolve host name, so look them up by string
+        Timeouts timeouts = request.getRepository() != null
+                ? repositoryTimeouts.getOrDefault(request.getRepository().toExternalForm(), defaultTimeouts)
+                : defaultTimeouts;
+        TransportRequest.Builder builder = request.toBuilder();
+        if (request.getConnectTimeout() == null) {
+            builder.withConnectTimeout(timeouts.getConnectTimeout());
+        }
+        if (request.getReadTimeout() == null) {
+            builder.withReadTimeout(timeouts.getReadTimeout());
+        }
+
+        CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+        CompletableFuture<TransportResponse> exchange;
+
+        // Requests are registered under lock, so abort can't miss ones which are being started
+        abortLock.readLock().lock();
+        try {
+            Throwable cause = abortCause;
+            if (cause != null) {
+                future.completeExceptionally(cause);
+                return future;
+            }
+            exchange = transport.execute(builder.build());
+            inFlight.put(future, exchange);
+        } finally {
+            abortLock.readLock().unlock();
+        }
+
+        future.whenComplete((response, e) -> {
+            inFlight.remove(future);
+            if (e != null) {
+                // Aborted, propagate to the underlying transport
+                exchange.cancel(true);
+            }
+        });
+        exchange.whenComplete((response, e) -> {
+            if (e != null) {
+                // When aborting, request future is failed with abort cause once all requests are cancelled
+                if (abortCause == null) {
+                    future.completeExceptionally(e);
+                }
+                return;
+            }
+
+            TrackedResponse tracked = new TrackedResponse(response);
+            open.add(tracked);
+            if (!future.complete(tracked) || abortCause != null) {
+                closeQuietly(tracked);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Aborts all in-flight requests and open responses, and fails all requests made afterwards
+     *
+     * @param cause Abort cause, used to complete request futures with
+     */
+    void abort(@NonNull Throwable cause) {
+        List<Map.Entry<CompletableFuture<TransportResponse>, CompletableFuture<TransportResponse>>> requests;
+        List<TransportResponse> responses;
+        abortLock.writeLock().lock();
+        try {
+            abortCause = cause;
+            requests = new ArrayList<>(inFlight.entrySet());
+            responses = new ArrayList<>(open);
+            logger.debug("Aborting {} in-flight requests and {} open responses", requests.size(), responses.size());
+
+            // Cancel underlying requests first, so all of them are aborted by the time any request future fails.
+            // Lock is held meanwhile, so requests made during cancellation can't fail before that either
+            for (Map.Entry<CompletableFuture<TransportResponse>, CompletableFuture<TransportResponse>> request : requests) {
+                request.getValue().cancel(true);
+            }
+        } finally {
+            abortLock.writeLock().unlock();
+        }
+        for (Map.Entry<CompletableFuture<TransportResponse>, CompletableFuture<TransportResponse>> request : requests) {
+            request.getKey().completeExceptionally(cause);
+        }
+        for (TransportResponse response : responses) {
+            try {
+                response.abort();
+            } catch (IOException e) {
+                logger.trace("Failed to abort response of {}", response.getRequest(), e);
+            }
+        }
+    }
+
+    private static void closeQuietly(@NonNull TransportResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            logger.trace("Failed to close response of {}", response.getRequest(), e);
+        }
+    }
+
+    /**
+     * Connect and read timeouts of a repository
+     */
+    static final class Timeouts {
+        private final Duration connectTimeout;
+        private final Duration readTimeout;
+
+        Timeouts(@Nullable Duration connectTimeout, @Nullable Duration readTimeout) {
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+        }
+
+        @Nullable
+        Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        @Nullable
+        Duration getReadTimeout() {
+            return readTimeout;
+        }
+    }
+
+    private final class TrackedResponse extends ForwardingTransportResponse {
+        private TrackedResponse(@NonNull TransportResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void abort() throws IOException {
+            open.remove(this);
+            super.abort();
+        }
+
+        @Override
+        public void close() throws IOException {
+            open.remove(this);
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.internal.DataProcessor;
+import eu.mikroskeem.picomaven.internal.SneakyThrow;
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import eu.mikroskeem.picomaven.internal.UrlUtils;
+import eu.mikroskeem.picomaven.internal.VersionRange;
+import eu.mikroskeem.picomaven.internal.VersionUtils;
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Versioning;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Writer;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves version ranges, {@code LATEST} and {@code RELEASE} using artifact's group level {@code maven-metadata.xml}
+ *
+ * @author Mark Vainomaa
+ */
+final class VersionResolver {
+    private static final Logger logger = LoggerFactory.getLogger(VersionResolver.class);
+    private static final String LATEST = "LATEST";
+    private static final String RELEASE = "RELEASE";
+    private static final String SNAPSHOT = "-SNAPSHOT";
+    private static final String METADATA_FILE = "maven-metadata-picomaven.xml";
+
+    private final DownloadSession session;
+    private final ExecutorService executorService;
+    private final ArtifactLocator locator;
+    private final Path downloadPath;
+    private final Duration metadataCacheTtl;
+
+    VersionResolver(@NonNull DownloadSession session, @NonNull ExecutorService executorService, @NonNull ArtifactLocator locator,
+                    @NonNull Path downloadPath, @Nullable Duration metadataCacheTtl) {
+        this.session = session;
+        this.executorService = executorService;
+        this.locator = locator;
+        this.downloadPath = downloadPath;
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    /**
+     * Returns whether given version needs to be resolved
+     *
+     * @param version Version
+     * @return Whether version is a range, {@code LATEST} or {@code RELEASE}
+     */
+    static boolean isDynamic(@NonNull String version) {
+        return LATEST.equals(version) || RELEASE.equals(version) || VersionRange.isRange(version);
+    }
+
+    /**
+     * Resolves dynamic version of given dependency to a concrete one
+     *
+     * @param dependency Dependency with dynamic version
+     * @return Future of resolved version, or future of {@code null} if no suitable version is available
+     */
+    @NonNull
+    CompletableFuture<@Nullable String> resolve(@NonNull Dependency dependency) {
+        String version = dependency.getVersion();
+        VersionRange range;
+        if (LATEST.equals(version) || RELEASE.equals(version)) {
+            range = null;
+        } else if ((range = VersionRange.parse(version)) == null) {
+            logger.warn("{} has invalid version range", dependency);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final VersionRange versionRange = range;
+        return getMetadata(dependency).thenApply(metadata -> {
+            if (metadata == null || metadata.getVersioning() == null) {
+                return null;
+            }
+
+            Versioning versioning = metadata.getVersioning();
+            if (LATEST.equals(version) && versioning.getLatest() != null) {
+                return versioning.getLatest();
+            }
+            if (RELEASE.equals(version) && versioning.getRelease() != null) {
+                return versioning.getRelease();
+            }
+
+            String selected = null;
+            for (String candidate : versioning.getVersions()) {
+                if (versionRange == null ? (!LATEST.equals(version) && candidate.endsWith(SNAPSHOT)) :
+                        (candidate.endsWith(SNAPSHOT) || !versionRange.contains(candidate))) {
+                    continue;
+                }
+                if (selected == null || VersionUtils.compare(candidate, selected) > 0) {
+                    selected = candidate;
+                }
+            }
+            return selected;
+        });
+    }
+
+    /**
+     * Gets merged group level metadata of given dependency from all repositories. Metadata is cached
+     * for the session, and on the disk if metadata cache TTL is set
+     *
+     * @param dependency Dependency
+     * @return Future of merged {@link Metadata}, or future of {@code null} if artifact is not known by any repository
+     */
+    @NonNull
+    private CompletableFuture<@Nullable Metadata> getMetadata(@NonNull Dependency dependency) {
+        String key = dependency.getGroupId() + ':' + dependency.getArtifactId();
+        return session.getVersionMetadata(key, () -> CompletableFuture.supplyAsync(() -> readCachedMetadata(dependency), executorService)
+                .thenCompose(cached -> cached != null ? CompletableFuture.completedFuture(cached) : fetchMetadata(dependency)));
+    }
+
+    @NonNull
+    private CompletableFuture<@Nullable Metadata> fetchMetadata(@NonNull Dependency dependency) {
+        List<CompletableFuture<Metadata>> futures = new ArrayList<>();
+        for (URL repository : locator.route(dependency, session.getRepositories())) {
+            URL url = UrlUtils.buildGroupMetaURL(repository, dependency);
+            futures.add(locator.fetch(repository, url, ArtifactLocator.METADATA_FETCHER).exceptionally(t -> {
+                Exception e = TaskUtils.unwrapException(t);
+                if (e instanceof TimeoutException) {
+                    SneakyThrow.rethrow(e);
+                }
+                logger.debug("Failed to fetch {}: {}", url, e.getMessage());
+                return null;
+            }));
+        }
+
+        return TaskUtils.waitForAll(futures).thenApplyAsync(v -> {
+            Set<String> versions = new LinkedHashSet<>();
+            String latest = null;
+            String release = null;
+            for (CompletableFuture<Metadata> future : futures) {
+                Metadata metadata = future.join();
+                if (metadata == null || metadata.getVersioning() == null) {
+                    continue;
+                }
+
+                Versioning versioning = metadata.getVersioning();
+                versions.addAll(versioning.getVersions());
+                latest = highest(latest, versioning.getLatest());
+                release = highest(release, versioning.getRelease());
+            }
+
+            if (versions.isEmpty() && latest == null && release == null) {
+                return null;
+            }
+
+            Versioning versioning = new Versioning();
+            versioning.setVersions(new ArrayList<>(versions));
+            versioning.setLatest(latest);
+            versioning.setRelease(release);
+            Metadata merged = new Metadata();
+            merged.setGroupId(dependency.getGroupId());
+            merged.setArtifactId(dependency.getArtifactId());
+            merged.setVersioning(versioning);
+            writeCachedMetadata(dependency, merged);
+            return merged;
+        }, executorService);
+    }
+
+    @Nullable
+    private Metadata readCachedMetadata(@NonNull Dependency dependency) {
+        if (metadataCacheTtl == null) {
+            return null;
+        }
+
+        Path metadataPath = getMetadataPath(dependency);
+        try {
+            if (Files.notExists(metadataPath)
+                    || Files.getLastModifiedTime(metadataPath).toInstant().plus(metadataCacheTtl).isBefore(Instant.now())) {
+                return null;
+            }
+            return DataProcessor.getMetadata(metadataPath.toUri().toURL());
+        } catch (IOException e) {
+            logger.warn("Failed to read cached metadata {}: {}", metadataPath, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCachedMetadata(@NonNull Dependency dependency, @NonNull Metadata metadata) {
+        if (metadataCacheTtl == null) {
+            return;
+        }
+
+        Path metadataPath = getMetadataPath(dependency);
+        Path temporary = metadataPath.resolveSibling(METADATA_FILE + ".tmp");
+        try {
+            Files.createDirectories(metadataPath.getParent());
+            try (Writer writer = Files.newBufferedWriter(temporary)) {
+                new MetadataXpp3Writer().write(writer, metadata);
+            }
+            Files.move(temporary, metadataPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("Failed to cache metadata {}: {}", metadataPath, e.getMessage());
+        }
+    }
+
+    @NonNull
+    private Path getMetadataPath(@NonNull Dependency dependency) {
+        return Paths.get(downloadPath.toString(), dependency.getGroupId().replace('.', '/'), dependency.getArtifactId(), METADATA_FILE);
+    }
+
+    @Nullable
+    private static String highest(@Nullable String first, @Nullable String second) {
+        if (first == null) {
+            return second;
+        }
+        return second != null && VersionUtils.compare(second, first) > 0 ? second : first;
+    }
+}
@@ -125,7 +125,7 @@ public final class ArtifactChecksum {
         /**
          * SHA-256
          */
-        SHA256("sha256", "SHA256")
+        SHA256("sha256", "SHA-256")
         ;
 
         private final String ext;
@@ -164,9 +164,9 @@ public final class ArtifactChecksum {
         /**
          * Hex checksum (most common)
          */
-        HEX((md, checksum) -> {
+        HEX((digest, checksum) -> {
             StringBuilder sb = new StringBuilder();
-            for (byte b : md.digest()) {
+            for (byte b : digest) {
                 sb.append(String.format("%02x", b));
             }
             return sb.toString().equalsIgnoreCase(checksum);
@@ -175,14 +175,14 @@ public final class ArtifactChecksum {
         /**
          * Base64 checksum
          */
-        BASE64((md, checksum) -> {
-            return new String(Base64.getEncoder().encode(md.digest()), StandardCharsets.UTF_8).equals(checksum);
+        BASE64((digest, checksum) -> {
+            return new String(Base64.getEncoder().encode(digest), StandardCharsets.UTF_8).equals(checksum);
         }),
         ;
 
-        private final BiPredicate<MessageDigest, String> verifier;
+        private final BiPredicate<byte[], String> verifier;
 
-        ChecksumEncoding(@NonNull BiPredicate<MessageDigest, String> verifier) {
+        ChecksumEncoding(@NonNull BiPredicate<byte[], String> verifier) {
             this.verifier = verifier;
         }
 
@@ -194,7 +194,18 @@ public final class ArtifactChecksum {
          * @return Whether checksums match or not
          */
         public boolean verify(@NonNull MessageDigest md, @NonNull String checksum) {
-            return verifier.test(md, checksum);
+            return verify(md.digest(), checksum);
+        }
+
+        /**
+         * Verifies checksum
+         *
+         * @param digest Digest computed from the data
+         * @param checksum Checksum to check against
+         * @return Whether checksums match or not
+         */
+        public boolean verify(byte @NonNull [] digest, @NonNull String checksum) {
+            return verifier.test(digest, checksum);
         }
     }
 }
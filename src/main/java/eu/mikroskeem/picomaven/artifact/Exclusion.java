@@ -0,0 +1,157 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.artifact;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.dataflow.qual.Pure;
+
+import java.util.Objects;
+
+/**
+ * Represents dependency exclusion. Both group id and artifact id may be a {@code *} wildcard
+ *
+ * @author Mark Vainomaa
+ */
+public final class Exclusion {
+    /**
+     * Wildcard matching any group or artifact id
+     */
+    public static final String WILDCARD = "*";
+
+    /**
+     * Exclusion which matches all dependencies
+     */
+    public static final Exclusion ALL = new Exclusion(WILDCARD, WILDCARD);
+
+    /**
+     * GroupId of excluded dependencies
+     */
+    private final String groupId;
+
+    /**
+     * ArtifactId of excluded dependencies
+     */
+    private final String artifactId;
+
+    /**
+     * Exclusion constructor
+     *
+     * @param groupId Excluded group id, or {@code *}
+     * @param artifactId Excluded artifact id, or {@code *}
+     */
+    public Exclusion(@NonNull String groupId, @NonNull String artifactId) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+    }
+
+    /**
+     * Gets {@link Exclusion} group id
+     *
+     * @return Excluded group id
+     */
+    @Pure
+    @NonNull
+    public String getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * Gets {@link Exclusion} artifact id
+     *
+     * @return Excluded artifact id
+     */
+    @Pure
+    @NonNull
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    /**
+     * Returns whether this exclusion matches given artifact
+     *
+     * @param groupId Artifact group id
+     * @param artifactId Artifact artifact id
+     * @return Whether artifact is excluded or not
+     */
+    @Pure
+    public boolean matches(@NonNull String groupId, @NonNull String artifactId) {
+        return (WILDCARD.equals(this.groupId) || this.groupId.equals(groupId)) &&
+                (WILDCARD.equals(this.artifactId) || this.artifactId.equals(artifactId));
+    }
+
+    /**
+     * Returns whether this exclusion matches given dependency
+     *
+     * @param dependency Dependency
+     * @return Whether dependency is excluded or not
+     */
+    @Pure
+    public boolean matches(@NonNull Dependency dependency) {
+        return matches(dependency.getGroupId(), dependency.getArtifactId());
+    }
+
+    @Pure
+    @Override
+    public String toString() {
+        return "Exclusion{" +
+                "groupId='" + groupId + '\'' +
+                ", artifactId='" + artifactId + '\'' +
+                '}';
+    }
+
+    @Pure
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Exclusion that = (Exclusion) o;
+        return groupId.equals(that.groupId) &&
+                artifactId.equals(that.artifactId);
+    }
+
+    @Pure
+    @Override
+    public int hashCode() {
+        return Objects.hash(groupId, artifactId);
+    }
+
+    /**
+     * Parse exclusion string (like {@code org.slf4j:*})
+     * and return it as {@link Exclusion} object
+     *
+     * @param exclusionString Exclusion string
+     * @return {@link Exclusion}
+     */
+    @NonNull
+    public static Exclusion fromString(@NonNull String exclusionString) {
+        String[] parts = exclusionString.split(":");
+        if (parts.length != 2) {
+            throw new IllegalStateException("Invalid exclusion string: '" + exclusionString + "'");
+        }
+
+        return new Exclusion(parts[0], parts[1]);
+    }
+}
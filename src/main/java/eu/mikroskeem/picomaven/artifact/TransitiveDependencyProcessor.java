@@ -27,6 +27,11 @@ package eu.mikroskeem.picomaven.artifact;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author Mark Vainomaa
  */
@@ -42,8 +47,13 @@ public interface TransitiveDependencyProcessor {
         private String scope;
         private boolean optional;
         private boolean allowed = true;
+        private List<Exclusion> exclusions;
 
         public DownloadableTransitiveDependency(Dependency parent, String groupId, String artifactId, String version, String classifier, String scope, boolean optional) {
+            this(parent, groupId, artifactId, version, classifier, scope, optional, Collections.emptyList());
+        }
+
+        public DownloadableTransitiveDependency(Dependency parent, String groupId, String artifactId, String version, String classifier, String scope, boolean optional, Collection<Exclusion> exclusions) {
             this.parent = parent;
             this.groupId = groupId;
             this.artifactId = artifactId;
@@ -51,6 +61,7 @@ public interface TransitiveDependencyProcessor {
             this.classifier = classifier;
             this.scope = scope;
             this.optional = optional;
+            this.exclusions = new ArrayList<>(exclusions);
         }
 
         public Dependency getParent() {
@@ -116,5 +127,13 @@ public interface TransitiveDependencyProcessor {
         public void setAllowed(boolean allowed) {
             this.allowed = allowed;
         }
+
+        public List<Exclusion> getExclusions() {
+            return exclusions;
+        }
+
+        public void setExclusions(List<Exclusion> exclusions) {
+            this.exclusions = exclusions;
+        }
     }
 }
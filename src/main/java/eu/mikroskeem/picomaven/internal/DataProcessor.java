@@ -26,6 +26,9 @@
 package eu.mikroskeem.picomaven.internal;
 
 import eu.mikroskeem.picomaven.artifact.ArtifactChecksum;
+import eu.mikroskeem.picomaven.transport.Transport;
+import eu.mikroskeem.picomaven.transport.TransportRequest;
+import eu.mikroskeem.picomaven.transport.TransportResponse;
 import org.apache.maven.artifact.repository.metadata.Metadata;
 import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
 import org.apache.maven.model.Dependency;
@@ -37,6 +40,7 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -45,7 +49,15 @@ import java.io.Writer;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.UnknownHostException;
-import java.security.MessageDigest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Predicate;
@@ -59,10 +71,17 @@ public final class DataProcessor {
 
     @Nullable
     public static Metadata getMetadata(@NonNull URL url) throws IOException {
-        try (InputStream is = UrlUtils.openConnection(url).getInputStream()) {
-            return new MetadataXpp3Reader().read(is, false);
+        try (InputStream is = url.openStream()) {
+            return readMetadata(is);
         } catch (FileNotFoundException e) {
             return null;
+        }
+    }
+
+    @NonNull
+    public static Metadata readMetadata(@NonNull InputStream is) throws IOException {
+        try {
+            return new MetadataXpp3Reader().read(is, false);
         } catch (XmlPullParserException e) {
             throw new IOException("Unable to parse XML", e);
         }
@@ -70,10 +89,17 @@ public final class DataProcessor {
 
     @Nullable
     public static Model getPom(@NonNull URL url) throws IOException {
-        try (InputStream is = UrlUtils.openConnection(url).getInputStream()) {
-            return new MavenXpp3Reader().read(is, false);
+        try (InputStream is = url.openStream()) {
+            return readPom(is);
         } catch (FileNotFoundException e) {
             return null;
+        }
+    }
+
+    @NonNull
+    public static Model readPom(@NonNull InputStream is) throws IOException {
+        try {
+            return new MavenXpp3Reader().read(is, false);
         } catch (XmlPullParserException e) {
             throw new IOException("Unable to parse XML", e);
         }
@@ -100,33 +126,83 @@ public final class DataProcessor {
         writer.write(w, model);
     }
 
+    public static void writeModel(@NonNull Path target, @NonNull Model model, boolean sanitize) throws IOException {
+        Path temporary = FileUtils.getTemporaryFileName(target);
+        Files.createDirectories(target.getParent());
+        try (BufferedWriter w = Files.newBufferedWriter(temporary, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            serializeModel(model, w, sanitize);
+        }
+
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
     @NonNull
-    public static CompletableFuture<@Nullable ArtifactChecksum> getArtifactChecksum(@NonNull Executor executor,
+    public static CompletableFuture<@Nullable ArtifactChecksum> getArtifactChecksum(@NonNull Transport transport,
+                                                                                    @NonNull Executor executor,
                                                                                     @NonNull URL artifactUrl,
+                                                                                    @Nullable URL repository,
                                                                                     ArtifactChecksum.ChecksumAlgo cst) {
         final URL url = UrlUtils.createURL(artifactUrl.toString() + "." + cst.getExt());
 
-        return CompletableFuture.supplyAsync(() -> {
-            try (BufferedReader is = new BufferedReader(new InputStreamReader(UrlUtils.openConnection(url).getInputStream()))) {
-                String response = is.lines().collect(Collectors.joining("\n"));
-                String[] parts = response.split("\\s", 2); // Checksum could be in '<checksum> <filename>' format, e.g what GNU coreutils output.
-                String checksum = parts.length == 2 ? parts[0] : response;
-                return new ArtifactChecksum(cst, ArtifactChecksum.ChecksumEncoding.HEX, checksum);
-            } catch (SocketTimeoutException | UnknownHostException e) {
-                return null;
-            } catch (FileNotFoundException e) {
-                return null;
+        return transport.execute(new TransportRequest.Builder(url).withRepository(repository).build()).thenApplyAsync(response -> {
+            try (TransportResponse r = response) {
+                if (r.isNotFound()) {
+                    return null;
+                }
+                if (!r.isSuccess()) {
+                    throw new IOException("Unexpected response code '" + r.getStatusCode() + "'");
+                }
+
+                try (BufferedReader is = new BufferedReader(new InputStreamReader(r.getBody(), StandardCharsets.UTF_8))) {
+                    return parseChecksum(cst, is.lines().collect(Collectors.joining("\n")));
+                }
             } catch (IOException e) {
                 SneakyThrow.rethrow(e);
             }
             return null;
-        }, executor);
+        }, executor).exceptionally(e -> {
+            Exception cause = TaskUtils.unwrapException(e);
+            if (cause instanceof SocketTimeoutException || cause instanceof UnknownHostException) {
+                return null;
+            }
+            SneakyThrow.rethrow(cause);
+            return null;
+        });
     }
 
-    public static boolean verifyChecksum(@NonNull ArtifactChecksum artifactChecksum, @NonNull byte[] data) {
-        MessageDigest md = artifactChecksum.getAlgo().getMessageDigest();
-        md.update(data);
-        return artifactChecksum.getEncoding().verify(md, artifactChecksum.getChecksum());
+    /**
+     * Reads artifact checksums from {@code X-Checksum-*} headers, which are sent along with artifacts
+     * by Maven Central, Nexus and Artifactory
+     *
+     * @param response Artifact response
+     * @return List of checksums present in the response
+     */
+    @NonNull
+    public static List<@NonNull ArtifactChecksum> getHeaderChecksums(@NonNull TransportResponse response) {
+        List<ArtifactChecksum> checksums = new ArrayList<>(CHECKSUM_HEADERS.size());
+        CHECKSUM_HEADERS.forEach((header, algo) -> {
+            String value = response.getHeader(header);
+            if (value != null && !value.trim().isEmpty()) {
+                checksums.add(parseChecksum(algo, value));
+            }
+        });
+        return checksums;
+    }
+
+    @NonNull
+    public static ArtifactChecksum parseChecksum(ArtifactChecksum.@NonNull ChecksumAlgo cst, @NonNull String response) {
+        String[] parts = response.trim().split("\\s", 2); // Checksum could be in '<checksum> <filename>' format, e.g what GNU coreutils output.
+        String checksum = parts.length == 2 ? parts[0] : response.trim();
+        return new ArtifactChecksum(cst, ArtifactChecksum.ChecksumEncoding.HEX, checksum);
+    }
+
+    private static final Map<String, ArtifactChecksum.ChecksumAlgo> CHECKSUM_HEADERS = new LinkedHashMap<>();
+
+    static {
+        CHECKSUM_HEADERS.put("X-Checksum-Sha256", ArtifactChecksum.ChecksumAlgo.SHA256);
+        CHECKSUM_HEADERS.put("X-Checksum-Sha1", ArtifactChecksum.ChecksumAlgo.SHA1);
+        CHECKSUM_HEADERS.put("X-Checksum-MD5", ArtifactChecksum.ChecksumAlgo.MD5);
     }
 
     public static final Predicate<String> RELEVANT_STRING_SCOPE_PREDICATE = scope -> {
@@ -140,7 +216,9 @@ public final class DataProcessor {
                 // Personally I think that system dependencies don't fit into
                 // PicoMaven's purpose. You may add system dependencies yourself to
                 // classloader.
-                && !scope.equalsIgnoreCase("system");
+                && !scope.equalsIgnoreCase("system")
+                // BOMs only provide dependency management
+                && !scope.equalsIgnoreCase("import");
     };
 
     public static final Predicate<Dependency> RELEVANT_SCOPE_PREDICATE = dependency ->
@@ -27,11 +27,7 @@ package eu.mikroskeem.picomaven.internal;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
 
 /**
  * @author Mark Vainomaa
@@ -43,22 +39,4 @@ public final class FileUtils {
     public static Path getTemporaryFileName(@NonNull Path target) {
         return target.resolveSibling(target.getFileName() + ".tmp");
     }
-
-    public static void writeAtomicReplace(@NonNull Path target, @NonNull Path temporary, byte @NonNull [] data) throws IOException {
-        // Create parent directory if target file does not exist.
-        if (Files.notExists(target)) {
-            Files.createDirectories(target.getParent());
-        }
-
-        // Write to temporary file
-        Files.write(temporary, data, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
-
-        // Atomic replace
-        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-    }
-
-    public static void writeAtomicReplace(@NonNull Path target, byte @NonNull [] data) throws IOException {
-        Path temporary = getTemporaryFileName(target);
-        writeAtomicReplace(target, temporary, data);
-    }
 }
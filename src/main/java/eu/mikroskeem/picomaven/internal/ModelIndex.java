@@ -0,0 +1,248 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.internal;
+
+import eu.mikroskeem.picomaven.artifact.Exclusion;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Repository;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact binary form of the effective POM data which is needed to walk the dependency graph,
+ * stored next to downloaded artifacts. Reading it does not need an XML parser nor full {@link Model}.
+ *
+ * @author Mark Vainomaa
+ */
+public final class ModelIndex {
+    private static final int MAGIC = 0x50434d49; // 'PCMI'
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<Entry> dependencies;
+    private final List<String> repositories;
+
+    public ModelIndex(@NonNull List<Entry> dependencies, @NonNull List<String> repositories) {
+        this.dependencies = Collections.unmodifiableList(new ArrayList<>(dependencies));
+        this.repositories = Collections.unmodifiableList(new ArrayList<>(repositories));
+    }
+
+    @NonNull
+    public List<Entry> getDependencies() {
+        return dependencies;
+    }
+
+    @NonNull
+    public List<String> getRepositories() {
+        return repositories;
+    }
+
+    /**
+     * Builds index of given effective model. Only dependencies in relevant scopes are included
+     *
+     * @param model Effective model
+     * @return Model index
+     */
+    @NonNull
+    public static ModelIndex fromModel(@NonNull Model model) {
+        List<Entry> dependencies = new ArrayList<>(model.getDependencies().size());
+        for (Dependency dependency : model.getDependencies()) {
+            if (!DataProcessor.RELEVANT_SCOPE_PREDICATE.test(dependency)) {
+                continue;
+            }
+
+            List<Exclusion> exclusions = new ArrayList<>(dependency.getExclusions().size());
+            for (org.apache.maven.model.Exclusion exclusion : dependency.getExclusions()) {
+                exclusions.add(new Exclusion(exclusion.getGroupId(), exclusion.getArtifactId()));
+            }
+            dependencies.add(new Entry(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(),
+                    dependency.getClassifier(), dependency.getType(), dependency.getScope(),
+                    "true".equalsIgnoreCase(dependency.getOptional()), exclusions));
+        }
+
+        List<String> repositories = new ArrayList<>(model.getRepositories().size());
+        for (Repository repository : model.getRepositories()) {
+            repositories.add(repository.getUrl());
+        }
+        return new ModelIndex(dependencies, repositories);
+    }
+
+    @NonNull
+    public static ModelIndex read(@NonNull Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != FORMAT_VERSION) {
+                throw new IOException("Unsupported model index format");
+            }
+
+            int repositoryCount = in.readInt();
+            List<String> repositories = new ArrayList<>(repositoryCount);
+            for (int i = 0; i < repositoryCount; i++) {
+                repositories.add(in.readUTF());
+            }
+
+            int dependencyCount = in.readInt();
+            List<Entry> dependencies = new ArrayList<>(dependencyCount);
+            for (int i = 0; i < dependencyCount; i++) {
+                String groupId = readNullableString(in);
+                String artifactId = readNullableString(in);
+                String version = readNullableString(in);
+                String classifier = readNullableString(in);
+                String type = readNullableString(in);
+                String scope = readNullableString(in);
+                boolean optional = in.readBoolean();
+                int exclusionCount = in.readInt();
+                List<Exclusion> exclusions = new ArrayList<>(exclusionCount);
+                for (int j = 0; j < exclusionCount; j++) {
+                    exclusions.add(new Exclusion(in.readUTF(), in.readUTF()));
+                }
+                dependencies.add(new Entry(groupId, artifactId, version, classifier, type, scope, optional, exclusions));
+            }
+            return new ModelIndex(dependencies, repositories);
+        }
+    }
+
+    public void write(@NonNull Path path) throws IOException {
+        Path temporary = FileUtils.getTemporaryFileName(path);
+        Files.createDirectories(path.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+
+            out.writeInt(repositories.size());
+            for (String repository : repositories) {
+                out.writeUTF(repository);
+            }
+
+            out.writeInt(dependencies.size());
+            for (Entry dependency : dependencies) {
+                writeNullableString(out, dependency.groupId);
+                writeNullableString(out, dependency.artifactId);
+                writeNullableString(out, dependency.version);
+                writeNullableString(out, dependency.classifier);
+                writeNullableString(out, dependency.type);
+                writeNullableString(out, dependency.scope);
+                out.writeBoolean(dependency.optional);
+                out.writeInt(dependency.exclusions.size());
+                for (Exclusion exclusion : dependency.exclusions) {
+                    out.writeUTF(exclusion.getGroupId());
+                    out.writeUTF(exclusion.getArtifactId());
+                }
+            }
+        }
+
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Nullable
+    private static String readNullableString(@NonNull DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(@NonNull DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Single dependency of indexed model
+     */
+    public static final class Entry {
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final String classifier;
+        private final String type;
+        private final String scope;
+        private final boolean optional;
+        private final List<Exclusion> exclusions;
+
+        public Entry(@Nullable String groupId, @Nullable String artifactId, @Nullable String version,
+                     @Nullable String classifier, @Nullable String type, @Nullable String scope,
+                     boolean optional, @NonNull List<Exclusion> exclusions) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.classifier = classifier;
+            this.type = type;
+            this.scope = scope;
+            this.optional = optional;
+            this.exclusions = Collections.unmodifiableList(new ArrayList<>(exclusions));
+        }
+
+        @Nullable
+        public String getGroupId() {
+            return groupId;
+        }
+
+        @Nullable
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        @Nullable
+        public String getVersion() {
+            return version;
+        }
+
+        @Nullable
+        public String getClassifier() {
+            return classifier;
+        }
+
+        @Nullable
+        public String getType() {
+            return type;
+        }
+
+        @Nullable
+        public String getScope() {
+            return scope;
+        }
+
+        public boolean isOptional() {
+            return optional;
+        }
+
+        @NonNull
+        public List<Exclusion> getExclusions() {
+            return exclusions;
+        }
+    }
+}
@@ -27,26 +27,41 @@ package eu.mikroskeem.picomaven.internal;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * @author Mark Vainomaa
  */
 public final class StreamUtils {
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte @NonNull [] b, int off, int len) {}
+    };
+
     private StreamUtils() {}
 
-    public static byte[] readBytes(@NonNull InputStream is) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] buf = new byte[4096];
+    public static void transferDigesting(@NonNull InputStream is, @NonNull OutputStream os,
+                                         @NonNull Collection<MessageDigest> digests) throws IOException {
+        byte[] buf = new byte[8192];
         int b;
         while ((b = is.read(buf, 0, buf.length)) != -1) {
-            baos.write(buf, 0, b);
+            os.write(buf, 0, b);
+            for (MessageDigest digest : digests) {
+                digest.update(buf, 0, b);
+            }
         }
+    }
 
-        return baos.toByteArray();
+    public static void digest(@NonNull InputStream is, @NonNull MessageDigest digest) throws IOException {
+        transferDigesting(is, DISCARD, Collections.singletonList(digest));
     }
 
     // TODO: remove this
@@ -25,12 +25,18 @@
 
 package eu.mikroskeem.picomaven.internal;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Mark Vainomaa
@@ -48,7 +54,7 @@ public final class TaskUtils {
     }
 
     public static <T> CompletableFuture<Void> waitForAll(Collection<? extends CompletableFuture<T>> completableFutures) {
-        return CompletableFuture.allOf(completableFutures.toArray(new CompletableFuture[0]));
+        return CompletableFuture.allOf(completableFutures.toArray(new CompletableFuture<?>[0]));
     }
 
     public static <T> CompletableFuture<Void> waitForAllFutures(Collection<? extends Future<T>> futures) {
@@ -59,22 +65,71 @@ public final class TaskUtils {
         return waitForAll(converted);
     }
 
-    public static <T> void waitForAllUninterruptibly(Collection<? extends CompletableFuture<T>> completableFutures) {
-        CompletableFuture[] completableFuturesArray = completableFutures.toArray(new CompletableFuture[0]);
+    public static void waitForAllUninterruptibly(Collection<? extends CompletableFuture<?>> completableFutures) {
+        CompletableFuture<?>[] completableFuturesArray = completableFutures.toArray(new CompletableFuture<?>[0]);
         allOfUninterruptible(completableFuturesArray);
     }
 
-    public static <T> void waitForAllFuturesUninterruptibly(Collection<? extends Future<T>> futures) {
-        CompletableFuture[] completableFuturesArray = new CompletableFuture[futures.size()];
-        int i = 0;
-        for (Future<T> future : futures) {
-            completableFuturesArray[i++] = wrapFuture(future);
+    /**
+     * Creates a future which completes after given delay. Delays are tracked by a single daemon thread,
+     * so no executor threads are blocked while waiting
+     *
+     * @param delay Delay
+     * @return Future completed after delay
+     */
+    public static CompletableFuture<Void> delay(Duration delay) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        ScheduledFuture<?> scheduled = DelayScheduler.INSTANCE.schedule(() -> future.complete(null),
+                Math.max(0, delay.toNanos()), TimeUnit.NANOSECONDS);
+        future.whenComplete((v, e) -> scheduled.cancel(false));
+        return future;
+    }
+
+    /**
+     * Creates a future which is already completed exceptionally
+     *
+     * @param t Exception
+     * @param <T> Future value type
+     * @return Failed future
+     */
+    public static <T> CompletableFuture<T> failedFuture(Throwable t) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    /**
+     * Unwraps exception thrown from {@link CompletableFuture} stage
+     *
+     * @param t Throwable to unwrap
+     * @return Original exception
+     */
+    public static Exception unwrapException(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
         }
+        if (t instanceof Exception) {
+            return (Exception) t;
+        }
+        SneakyThrow.rethrow(t);
+        throw null;
+    }
 
-        allOfUninterruptible(completableFuturesArray);
+    private static final class DelayScheduler {
+        private static final ScheduledExecutorService INSTANCE;
+
+        static {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "PicoMaven delay scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            INSTANCE = executor;
+        }
     }
 
-    private static void allOfUninterruptible(CompletableFuture[] completableFutures) {
+    private static void allOfUninterruptible(CompletableFuture<?>[] completableFutures) {
         while (true) {
             try {
                 CompletableFuture.allOf(completableFutures).get();
@@ -30,14 +30,9 @@ import org.apache.maven.artifact.repository.metadata.Metadata;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Base64;
 import java.util.Objects;
 
 /**
@@ -46,8 +41,6 @@ import java.util.Objects;
 public final class UrlUtils {
     private UrlUtils() {}
 
-    private static final String USER_AGENT = "PicoMaven/__PICOMAVEN_VERSION__";
-
     @NonNull
     public static URL buildGroupMetaURL(@NonNull URL repository, @NonNull Dependency dependency) {
         return createURL(String.format("%s/%s/%s/maven-metadata.xml",
@@ -105,35 +98,6 @@ public final class UrlUtils {
         );
     }
 
-    @NonNull
-    public static URLConnection openConnection(@NonNull URL url) throws IOException {
-        URLConnection connection = url.openConnection();
-        if (connection instanceof HttpURLConnection) {
-            HttpURLConnection httpConnection = (HttpURLConnection) connection;
-            connection.setRequestProperty("User-Agent", USER_AGENT);
-            httpConnection.setInstanceFollowRedirects(true);
-
-            // Authentication
-            if (url.getUserInfo() != null) {
-                byte[] encodedBytes = Base64.getEncoder().encode(url.getUserInfo().getBytes(StandardCharsets.UTF_8));
-                String encoded = new String(encodedBytes, StandardCharsets.UTF_8);
-                connection.setRequestProperty("Authorization", "Basic " + encoded);
-            }
-        }
-        connection.setUseCaches(false);
-        connection.setDoInput(true);
-
-        if (connection instanceof HttpURLConnection) {
-            HttpURLConnection httpConnection = (HttpURLConnection) connection;
-            if (httpConnection.getResponseCode() != 200) { // SUCCESS
-                throw new IOException("Unexpected response code '" + httpConnection.getResponseCode() + '"');
-            }
-        }
-
-        // Probably it is *shrug*
-        return connection;
-    }
-
     @NonNull
     private static String formatArtifactNameFromDependency(@NonNull Dependency dependency, @NonNull String ext) {
         return String.format("%s-%s%s.%s",
@@ -0,0 +1,171 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.internal;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maven version range, e.g {@code [1.0,2.0)}, {@code (,1.0]} or {@code [1.2]}. Multiple ranges
+ * may be separated by commas, e.g {@code [1.0,1.2),(1.2,)}
+ *
+ * @author Mark Vainomaa
+ */
+public final class VersionRange {
+    private final List<Restriction> restrictions;
+
+    private VersionRange(@NonNull List<Restriction> restrictions) {
+        this.restrictions = Collections.unmodifiableList(restrictions);
+    }
+
+    /**
+     * Returns whether given version is in this range
+     *
+     * @param version Version
+     * @return Whether version is in this range
+     */
+    public boolean contains(@NonNull String version) {
+        for (Restriction restriction : restrictions) {
+            if (restriction.contains(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether given version string is a range
+     *
+     * @param version Version string
+     * @return Whether version string is a range
+     */
+    public static boolean isRange(@NonNull String version) {
+        return version.startsWith("[") || version.startsWith("(");
+    }
+
+    /**
+     * Parses version range
+     *
+     * @param spec Version range specification
+     * @return Parsed {@link VersionRange}, or {@code null} if given string is not a valid range
+     */
+    @Nullable
+    public static VersionRange parse(@NonNull String spec) {
+        List<Restriction> restrictions = new ArrayList<>();
+        String remaining = spec.trim();
+        while (!remaining.isEmpty()) {
+            if (!isRange(remaining)) {
+                return null;
+            }
+
+            int end = indexOfAny(remaining, ']', ')');
+            if (end < 0) {
+                return null;
+            }
+
+            boolean lowerInclusive = remaining.charAt(0) == '[';
+            boolean upperInclusive = remaining.charAt(end) == ']';
+            String body = remaining.substring(1, end).trim();
+            int comma = body.indexOf(',');
+            if (comma < 0) {
+                // Exact version, only valid with inclusive bounds
+                if (!lowerInclusive || !upperInclusive || body.isEmpty()) {
+                    return null;
+                }
+                restrictions.add(new Restriction(body, true, body, true));
+            } else {
+                String lower = body.substring(0, comma).trim();
+                String upper = body.substring(comma + 1).trim();
+                if (upper.indexOf(',') >= 0) {
+                    return null;
+                }
+                restrictions.add(new Restriction(lower.isEmpty() ? null : lower, lowerInclusive,
+                        upper.isEmpty() ? null : upper, upperInclusive));
+            }
+
+            remaining = remaining.substring(end + 1).trim();
+            if (remaining.startsWith(",")) {
+                remaining = remaining.substring(1).trim();
+            }
+        }
+        return restrictions.isEmpty() ? null : new VersionRange(restrictions);
+    }
+
+    private static int indexOfAny(@NonNull String value, char first, char second) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == first || c == second) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "VersionRange{" +
+                "restrictions=" + restrictions +
+                '}';
+    }
+
+    private static final class Restriction {
+        private final String lower;
+        private final boolean lowerInclusive;
+        private final String upper;
+        private final boolean upperInclusive;
+
+        private Restriction(@Nullable String lower, boolean lowerInclusive, @Nullable String upper, boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        private boolean contains(@NonNull String version) {
+            if (lower != null) {
+                int result = VersionUtils.compare(version, lower);
+                if (result < 0 || (result == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int result = VersionUtils.compare(version, upper);
+                return result < 0 || (result == 0 && upperInclusive);
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return (lowerInclusive ? "[" : "(") + (lower != null ? lower : "") + ',' + (upper != null ? upper : "")
+                    + (upperInclusive ? "]" : ")");
+        }
+    }
+}
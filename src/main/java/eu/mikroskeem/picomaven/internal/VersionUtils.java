@@ -0,0 +1,165 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.internal;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Maven version string utilities
+ *
+ * @author Mark Vainomaa
+ */
+public final class VersionUtils {
+    private VersionUtils() {}
+
+    // Well-known qualifiers in ascending order, empty string being a release
+    private static final List<String> QUALIFIERS = Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot", "", "sp");
+
+    /**
+     * Compares two versions similarly to how Maven does it, e.g {@code 1.0-alpha1 < 1.0-SNAPSHOT < 1.0 < 1.0.1 < 1.10}
+     *
+     * @param first First version
+     * @param second Second version
+     * @return Negative integer, zero or positive integer if first version is less than, equal to or greater than second
+     */
+    public static int compare(@NonNull String first, @NonNull String second) {
+        List<Object> firstItems = parse(first);
+        List<Object> secondItems = parse(second);
+        int length = Math.max(firstItems.size(), secondItems.size());
+        for (int i = 0; i < length; i++) {
+            int result = compareItems(
+                    i < firstItems.size() ? firstItems.get(i) : null,
+                    i < secondItems.size() ? secondItems.get(i) : null
+            );
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    @NonNull
+    private static List<Object> parse(@NonNull String version) {
+        List<Object> items = new ArrayList<>();
+        String value = version.toLowerCase(Locale.ROOT);
+        int start = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i == value.length() ? '.' : value.charAt(i);
+            if (c == '.' || c == '-') {
+                if (i > start) {
+                    items.add(parseItem(value.substring(start, i)));
+                }
+                if (c == '-') {
+                    // Qualifier follows, so 1.0-SNAPSHOT == 1-SNAPSHOT
+                    normalize(items);
+                }
+                start = i + 1;
+            } else if (i > start && Character.isDigit(c) != Character.isDigit(value.charAt(i - 1))) {
+                // Transition between digits and characters, e.g "1.0alpha1"
+                items.add(parseItem(value.substring(start, i)));
+                normalize(items);
+                start = i;
+            }
+        }
+
+        // Trailing zeros and release qualifiers don't matter, 1.0 == 1 == 1-final
+        normalize(items);
+        return items;
+    }
+
+    private static void normalize(@NonNull List<Object> items) {
+        while (!items.isEmpty() && compareItems(items.get(items.size() - 1), null) == 0) {
+            items.remove(items.size() - 1);
+        }
+    }
+
+    @NonNull
+    private static Object parseItem(@NonNull String item) {
+        if (Character.isDigit(item.charAt(0))) {
+            return new BigInteger(item);
+        }
+
+        switch (item) {
+            case "a":
+                return "alpha";
+            case "b":
+                return "beta";
+            case "m":
+                return "milestone";
+            case "cr":
+                return "rc";
+            case "ga":
+            case "final":
+            case "release":
+                return "";
+            default:
+                return item;
+        }
+    }
+
+    private static int compareItems(@Nullable Object first, @Nullable Object second) {
+        if (first == null && second == null) {
+            return 0;
+        } else if (first == null) {
+            return -compareItems(second, null);
+        }
+
+        if (first instanceof BigInteger) {
+            if (second == null) {
+                return ((BigInteger) first).signum();
+            }
+            // Numbers are always newer than qualifiers
+            return second instanceof BigInteger ? ((BigInteger) first).compareTo((BigInteger) second) : 1;
+        }
+
+        if (second instanceof BigInteger) {
+            return -1;
+        }
+        return compareQualifiers((String) first, second == null ? "" : (String) second);
+    }
+
+    private static int compareQualifiers(@NonNull String first, @NonNull String second) {
+        int firstIndex = QUALIFIERS.indexOf(first);
+        int secondIndex = QUALIFIERS.indexOf(second);
+        if (firstIndex != -1 && secondIndex != -1) {
+            return Integer.compare(firstIndex, secondIndex);
+        } else if (firstIndex != -1) {
+            return -1;
+        } else if (secondIndex != -1) {
+            return 1;
+        }
+
+        // Unknown qualifiers are considered newer than known ones, and are compared lexically
+        return first.compareTo(second);
+    }
+}
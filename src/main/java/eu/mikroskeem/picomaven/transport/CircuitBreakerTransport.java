@@ -0,0 +1,232 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link Transport} decorator which tracks health of every repository. After given number of consecutive connection
+ * failures (unknown host, no route to host, connection refused or {@link ConnectTimeoutException}) repository is
+ * considered to be down, and requests to it
+ * fail immediately with {@link RepositoryUnavailableException} until cooldown passes. After that a single probe
+ * request is let through, which either closes the breaker again or starts a new cooldown.
+ *
+ * @author Mark Vainomaa
+ */
+public final class CircuitBreakerTransport implements Transport {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerTransport.class);
+
+    private final Transport transport;
+    private final int failureThreshold;
+    private final Duration cooldown;
+    private final ConcurrentMap<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new {@link CircuitBreakerTransport}
+     *
+     * @param transport Transport to decorate
+     * @param failureThreshold Number of consecutive connection failures after which repository is skipped,
+     *                         or {@code 0} to only track repository health
+     * @param cooldown For how long repository is skipped
+     */
+    public CircuitBreakerTransport(@NonNull Transport transport, int failureThreshold, @NonNull Duration cooldown) {
+        if (failureThreshold < 0) {
+            throw new IllegalArgumentException("Failure threshold can't be negative");
+        }
+        this.transport = transport;
+        this.failureThreshold = failureThreshold;
+        this.cooldown = cooldown;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<@NonNull TransportResponse> execute(@NonNull TransportRequest request) {
+        URL repository = request.getRepository();
+        if (repository == null) {
+            return transport.execute(request);
+        }
+
+        Breaker breaker = breakers.computeIfAbsent(repository.toExternalForm(), k -> new Breaker(repository));
+        Permit permit = breaker.acquire();
+        if (permit == Permit.REJECT) {
+            return TaskUtils.failedFuture(new RepositoryUnavailableException(repository, "Repository " + repository
+                    + " is unavailable after " + breaker.snapshot().getConsecutiveFailures() + " connection failures"));
+        }
+
+        CompletableFuture<TransportResponse> exchange = transport.execute(request);
+        exchange.whenComplete((response, t) -> {
+            if (t == null) {
+                breaker.onSuccess(permit);
+                return;
+            }
+
+            Exception e = TaskUtils.unwrapException(t);
+            if (isConnectionFailure(e)) {
+                breaker.onFailure(permit, e);
+            } else {
+                // Cancelled or failed for unrelated reasons, nothing learned about repository health
+                breaker.onInconclusive(permit);
+            }
+        });
+        return exchange;
+    }
+
+    /**
+     * Gets health of given repository
+     *
+     * @param repository Repository URL
+     * @return Repository health
+     */
+    @NonNull
+    public RepositoryHealth getHealth(@NonNull URL repository) {
+        Breaker breaker = breakers.get(repository.toExternalForm());
+        return breaker != null
+                ? breaker.snapshot()
+                : new RepositoryHealth(repository, RepositoryHealth.State.CLOSED, 0, 0, null, null);
+    }
+
+    /**
+     * Gets health of all repositories requests have been made to
+     *
+     * @return Map of repository URLs in {@link URL#toExternalForm()} format and their health
+     */
+    @NonNull
+    public Map<String, RepositoryHealth> getHealth() {
+        Map<String, RepositoryHealth> health = new LinkedHashMap<>();
+        for (Map.Entry<String, Breaker> breaker : breakers.entrySet()) {
+            health.put(breaker.getKey(), breaker.getValue().snapshot());
+        }
+        return health;
+    }
+
+    static boolean isConnectionFailure(@NonNull Exception e) {
+        // Read timeouts are left out, slow responses don't mean that repository is down
+        return e instanceof UnknownHostException || e instanceof ConnectException
+                || e instanceof NoRouteToHostException || e instanceof ConnectTimeoutException;
+    }
+
+    private enum Permit {
+        ALLOW,
+        PROBE,
+        REJECT
+    }
+
+    private final class Breaker {
+        private final URL repository;
+        private RepositoryHealth.State state = RepositoryHealth.State.CLOSED;
+        private int consecutiveFailures = 0;
+        private long totalFailures = 0;
+        private Throwable lastFailure = null;
+        private long openUntil = 0;
+        private Instant retryAt = null;
+        private boolean probing = false;
+
+        private Breaker(@NonNull URL repository) {
+            this.repository = repository;
+        }
+
+        @NonNull
+        synchronized Permit acquire() {
+            switch (state) {
+                case OPEN:
+                    if (System.nanoTime() - openUntil < 0) {
+                        return Permit.REJECT;
+                    }
+                    state = RepositoryHealth.State.HALF_OPEN;
+                    retryAt = null;
+                    // Fall through
+                case HALF_OPEN:
+                    if (probing) {
+                        return Permit.REJECT;
+                    }
+                    logger.debug("Probing whether repository {} is back up", repository);
+                    probing = true;
+                    return Permit.PROBE;
+                default:
+                    return Permit.ALLOW;
+            }
+        }
+
+        synchronized void onSuccess(@NonNull Permit permit) {
+            if (permit == Permit.PROBE) {
+                probing = false;
+            }
+            if (state != RepositoryHealth.State.CLOSED) {
+                logger.info("Repository {} is back up", repository);
+            }
+            state = RepositoryHealth.State.CLOSED;
+            consecutiveFailures = 0;
+            retryAt = null;
+        }
+
+        synchronized void onFailure(@NonNull Permit permit, @NonNull Exception e) {
+            consecutiveFailures++;
+            totalFailures++;
+            lastFailure = e;
+            if (permit == Permit.PROBE) {
+                probing = false;
+                open();
+            } else if (state == RepositoryHealth.State.CLOSED && failureThreshold > 0 && consecutiveFailures >= failureThreshold) {
+                open();
+            }
+        }
+
+        synchronized void onInconclusive(@NonNull Permit permit) {
+            if (permit == Permit.PROBE) {
+                // Let another request probe the repository
+                probing = false;
+            }
+        }
+
+        private void open() {
+            logger.warn("Repository {} is down after {} connection failures (last: {}), skipping it for {} seconds",
+                    repository, consecutiveFailures, lastFailure.toString(), cooldown.getSeconds());
+            state = RepositoryHealth.State.OPEN;
+            openUntil = System.nanoTime() + cooldown.toNanos();
+            retryAt = Instant.now().plus(cooldown);
+        }
+
+        @NonNull
+        synchronized RepositoryHealth snapshot() {
+            return new RepositoryHealth(repository, state, consecutiveFailures, totalFailures, lastFailure, retryAt);
+        }
+    }
+}
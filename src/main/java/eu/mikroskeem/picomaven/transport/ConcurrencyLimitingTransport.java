@@ -0,0 +1,245 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link Transport} decorator which limits number of requests in flight per repository and per host. Request is
+ * in flight until its response is closed. Requests above the limit are queued and dispatched in order as soon as
+ * earlier requests finish, without blocking any threads.
+ *
+ * @author Mark Vainomaa
+ */
+public final class ConcurrencyLimitingTransport implements Transport {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitingTransport.class);
+
+    private final Transport transport;
+    private final int maxPerRepository;
+    private final int maxPerHost;
+    private final ConcurrentMap<String, Limiter> repositoryLimiters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Limiter> hostLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new {@link ConcurrencyLimitingTransport}
+     *
+     * @param transport Transport to decorate
+     * @param maxPerRepository Maximum number of requests in flight per repository, or {@code 0} for unlimited
+     * @param maxPerHost Maximum number of requests in flight per host, or {@code 0} for unlimited
+     */
+    public ConcurrencyLimitingTransport(@NonNull Transport transport, int maxPerRepository, int maxPerHost) {
+        if (maxPerRepository < 0 || maxPerHost < 0) {
+            throw new IllegalArgumentException("Limits can't be negative");
+        }
+        this.transport = transport;
+        this.maxPerRepository = maxPerRepository;
+        this.maxPerHost = maxPerHost;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<@NonNull TransportResponse> execute(@NonNull TransportRequest request) {
+        // Limiters are always acquired in the same order, so requests can't wait on each other in a cycle
+        List<Limiter> limiters = new ArrayList<>(2);
+        if (maxPerRepository > 0 && request.getRepository() != null) {
+            limiters.add(repositoryLimiters.computeIfAbsent(request.getRepository().toExternalForm(), k -> new Limiter(maxPerRepository)));
+        }
+        if (maxPerHost > 0) {
+            limiters.add(hostLimiters.computeIfAbsent(hostKey(request.getUrl()), k -> new Limiter(maxPerHost)));
+        }
+        if (limiters.isEmpty()) {
+            return transport.execute(request);
+        }
+
+        CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+        acquire(request, limiters, 0, future);
+        return future;
+    }
+
+    private void acquire(@NonNull TransportRequest request, @NonNull List<Limiter> limiters, int index,
+                         @NonNull CompletableFuture<TransportResponse> future) {
+        if (index == limiters.size()) {
+            dispatch(request, limiters, future);
+            return;
+        }
+
+        Limiter limiter = limiters.get(index);
+        CompletableFuture<Void> permit = limiter.acquire(future);
+        if (!permit.isDone()) {
+            logger.trace("Request to {} is queued, {} requests waiting", request.getUrl(), limiter.getQueued());
+        }
+        permit.thenRun(() -> {
+            if (future.isDone()) {
+                // Cancelled while waiting
+                release(limiters, index + 1);
+                return;
+            }
+            acquire(request, limiters, index + 1, future);
+        });
+    }
+
+    private void dispatch(@NonNull TransportRequest request, @NonNull List<Limiter> limiters,
+                          @NonNull CompletableFuture<TransportResponse> future) {
+        AtomicBoolean released = new AtomicBoolean(false);
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                release(limiters, limiters.size());
+            }
+        };
+
+        CompletableFuture<TransportResponse> exchange;
+        try {
+            exchange = transport.execute(request);
+        } catch (Throwable e) {
+            release.run();
+            future.completeExceptionally(e);
+            return;
+        }
+
+        future.whenComplete((response, e) -> {
+            if (e != null) {
+                exchange.cancel(true);
+            }
+        });
+        exchange.whenComplete((response, e) -> {
+            if (e != null) {
+                release.run();
+                future.completeExceptionally(e);
+                return;
+            }
+
+            TransportResponse limited = new PermitResponse(response, release);
+            if (!future.complete(limited)) {
+                try {
+                    limited.close();
+                } catch (IOException ex) {
+                    logger.trace("Failed to close response of {}", request, ex);
+                }
+            }
+        });
+    }
+
+    private static void release(@NonNull List<Limiter> limiters, int count) {
+        for (int i = 0; i < count; i++) {
+            limiters.get(i).release();
+        }
+    }
+
+    @NonNull
+    private static String hostKey(@NonNull URL url) {
+        return url.getProtocol() + "://" + url.getHost() + ':' + (url.getPort() != -1 ? url.getPort() : url.getDefaultPort());
+    }
+
+    private static final class Limiter {
+        private final int limit;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        private int inFlight = 0;
+
+        private Limiter(int limit) {
+            this.limit = limit;
+        }
+
+        @NonNull
+        synchronized CompletableFuture<Void> acquire(@NonNull CompletableFuture<?> owner) {
+            if (inFlight < limit) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+
+            Waiter waiter = new Waiter(owner);
+            waiters.add(waiter);
+            return waiter.permit;
+        }
+
+        void release() {
+            Waiter next;
+            synchronized (this) {
+                // Hand permit over to next waiter which is still interested, cancelled ones are dropped
+                do {
+                    next = waiters.poll();
+                } while (next != null && next.owner.isDone());
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+            }
+            next.permit.complete(null);
+        }
+
+        synchronized int getQueued() {
+            return waiters.size();
+        }
+    }
+
+    private static final class Waiter {
+        private final CompletableFuture<?> owner;
+        private final CompletableFuture<Void> permit = new CompletableFuture<>();
+
+        private Waiter(@NonNull CompletableFuture<?> owner) {
+            this.owner = owner;
+        }
+    }
+
+    private static final class PermitResponse extends ForwardingTransportResponse {
+        private final Runnable release;
+
+        private PermitResponse(@NonNull TransportResponse response, @NonNull Runnable release) {
+            super(response);
+            this.release = release;
+        }
+
+        @Override
+        public void abort() throws IOException {
+            try {
+                super.abort();
+            } finally {
+                release.run();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown by transports when connecting to a repository times out. Unlike other {@link SocketTimeoutException}s,
+ * which may be caused by slow responses, this means that repository host did not respond at all.
+ *
+ * @author Mark Vainomaa
+ * @see CircuitBreakerTransport
+ */
+public final class ConnectTimeoutException extends SocketTimeoutException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new {@link ConnectTimeoutException}
+     *
+     * @param message Exception message
+     */
+    public ConnectTimeoutException(@NonNull String message) {
+        super(message);
+    }
+
+    /**
+     * Creates a new {@link ConnectTimeoutException}
+     *
+     * @param message Exception message
+     * @param cause Underlying exception
+     */
+    public ConnectTimeoutException(@NonNull String message, @Nullable Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
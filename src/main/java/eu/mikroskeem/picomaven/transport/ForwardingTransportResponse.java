@@ -0,0 +1,85 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link TransportResponse} which forwards all calls to another response. Used by transport decorators
+ * which need to know when response is released.
+ *
+ * @author Mark Vainomaa
+ */
+public abstract class ForwardingTransportResponse implements TransportResponse {
+    protected final TransportResponse response;
+
+    /**
+     * Creates a new {@link ForwardingTransportResponse}
+     *
+     * @param response Response to forward calls to
+     */
+    protected ForwardingTransportResponse(@NonNull TransportResponse response) {
+        this.response = response;
+    }
+
+    @NonNull
+    @Override
+    public TransportRequest getRequest() {
+        return response.getRequest();
+    }
+
+    @Override
+    public int getStatusCode() {
+        return response.getStatusCode();
+    }
+
+    @NonNull
+    @Override
+    public Map<String, List<String>> getHeaders() {
+        return response.getHeaders();
+    }
+
+    @NonNull
+    @Override
+    public InputStream getBody() throws IOException {
+        return response.getBody();
+    }
+
+    @Override
+    public void abort() throws IOException {
+        response.abort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        response.close();
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * {@link Transport} implementation using {@link URLConnection}. Supports HTTP(S) and all other
+ * protocols supported by the JVM, e.g {@code file://}. Blocking I/O is done on given executor.
+ *
+ * @author Mark Vainomaa
+ */
+public final class HttpUrlConnectionTransport implements Transport {
+    static final String USER_AGENT = "PicoMaven/__PICOMAVEN_VERSION__";
+    static final InputStream EMPTY = new ByteArrayInputStream(new byte[0]);
+
+    private final Executor executor;
+
+    /**
+     * Creates a new {@link HttpUrlConnectionTransport}
+     *
+     * @param executor Executor used to execute blocking requests
+     */
+    public HttpUrlConnectionTransport(@NonNull Executor executor) {
+        this.executor = executor;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<@NonNull TransportResponse> execute(@NonNull TransportRequest request) {
+        CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+        AtomicReference<URLConnection> connectionRef = new AtomicReference<>();
+        future.whenComplete((response, e) -> {
+            if (e instanceof CancellationException) {
+                disconnect(connectionRef.get());
+            }
+        });
+
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+
+                try {
+                    TransportResponse response = open(request, connection -> {
+                        connectionRef.set(connection);
+                        if (future.isDone()) {
+                            // Cancelled while connection was being set up
+                            disconnect(connection);
+                        }
+                    });
+                    if (!future.complete(response)) {
+                        response.close();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static void disconnect(@Nullable URLConnection connection) {
+        if (connection instanceof HttpURLConnection) {
+            ((HttpURLConnection) connection).disconnect();
+        }
+    }
+
+    private static int toMillis(@NonNull Duration duration) {
+        // Zero means infinite timeout for URLConnection
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, duration.toMillis()));
+    }
+
+    @NonNull
+    private static TransportResponse open(@NonNull TransportRequest request,
+                                          @NonNull Consumer<URLConnection> onOpen) throws IOException {
+        URL url = request.getUrl();
+        URLConnection connection = url.openConnection();
+        onOpen.accept(connection);
+        connection.setUseCaches(false);
+        if (request.getConnectTimeout() != null) {
+            connection.setConnectTimeout(toMillis(request.getConnectTimeout()));
+        }
+        if (request.getReadTimeout() != null) {
+            connection.setReadTimeout(toMillis(request.getReadTimeout()));
+        }
+        connection.setDoInput(true);
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            httpConnection.setRequestMethod(request.getMethod().name());
+            httpConnection.setInstanceFollowRedirects(true);
+            connection.setRequestProperty("User-Agent", USER_AGENT);
+
+            // Authentication
+            if (url.getUserInfo() != null) {
+                byte[] encodedBytes = Base64.getEncoder().encode(url.getUserInfo().getBytes(StandardCharsets.UTF_8));
+                String encoded = new String(encodedBytes, StandardCharsets.UTF_8);
+                connection.setRequestProperty("Authorization", "Basic " + encoded);
+            }
+
+            // Conditional and ranged requests
+            if (request.getIfNoneMatch() != null) {
+                connection.setRequestProperty("If-None-Match", request.getIfNoneMatch());
+            }
+            if (request.getIfModifiedSince() != null) {
+                connection.setRequestProperty("If-Modified-Since",
+                        DateTimeFormatter.RFC_1123_DATE_TIME.format(request.getIfModifiedSince().atOffset(ZoneOffset.UTC)));
+            }
+            if (request.isRanged()) {
+                connection.setRequestProperty("Range", "bytes=" + request.getRangeStart() + '-'
+                        + (request.getRangeEnd() >= 0 ? String.valueOf(request.getRangeEnd()) : ""));
+            }
+
+            // Connect phase gets its own exception, so unreachable hosts can be told apart from slow responses
+            try {
+                httpConnection.connect();
+            } catch (SocketTimeoutException e) {
+                throw new ConnectTimeoutException("Connecting to " + url.getHost() + " timed out", e);
+            }
+
+            int statusCode = httpConnection.getResponseCode();
+            InputStream body = null;
+            if (statusCode >= 400) {
+                // Error responses might not have a body
+                body = httpConnection.getErrorStream();
+                body = body != null ? body : EMPTY;
+            }
+            return new ConnectionResponse(request, connection, statusCode, body);
+        }
+
+        // Other protocols don't have status codes, so emulate them
+        InputStream body;
+        try {
+            body = connection.getInputStream();
+        } catch (FileNotFoundException e) {
+            return new ConnectionResponse(request, connection, 404, EMPTY);
+        }
+
+        if (request.getIfModifiedSince() != null && connection.getLastModified() > 0
+                && connection.getLastModified() <= request.getIfModifiedSince().toEpochMilli()) {
+            body.close();
+            return new ConnectionResponse(request, connection, 304, EMPTY);
+        }
+        if (request.getMethod() == TransportRequest.Method.HEAD) {
+            body.close();
+            return new ConnectionResponse(request, connection, 200, EMPTY);
+        }
+        if (request.isRanged()) {
+            long skipped = 0;
+            while (skipped < request.getRangeStart()) {
+                long count = body.skip(request.getRangeStart() - skipped);
+                if (count <= 0) {
+                    break;
+                }
+                skipped += count;
+            }
+            return new ConnectionResponse(request, connection, 206, body);
+        }
+        return new ConnectionResponse(request, connection, 200, body);
+    }
+
+    private static final class ConnectionResponse implements TransportResponse {
+        private final TransportRequest request;
+        private final URLConnection connection;
+        private final int statusCode;
+        private InputStream body;
+
+        private ConnectionResponse(@NonNull TransportRequest request, @NonNull URLConnection connection,
+                                   int statusCode, @Nullable InputStream body) {
+            this.request = request;
+            this.connection = connection;
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        @NonNull
+        @Override
+        public TransportRequest getRequest() {
+            return request;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        @NonNull
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+                // Status line has null key
+                if (header.getKey() != null) {
+                    headers.put(header.getKey(), header.getValue());
+                }
+            }
+            return Collections.unmodifiableMap(headers);
+        }
+
+        @NonNull
+        @Override
+        public synchronized InputStream getBody() throws IOException {
+            if (body == null) {
+                body = request.getMethod() == TransportRequest.Method.HEAD ? EMPTY : connection.getInputStream();
+            }
+            return body;
+        }
+
+        @Override
+        public void abort() throws IOException {
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            } else {
+                close();
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (body != null) {
+                body.close();
+            } else if (connection instanceof HttpURLConnection) {
+                // Body was never requested, but connection must be released
+                connection.getInputStream().close();
+            }
+        }
+    }
+}
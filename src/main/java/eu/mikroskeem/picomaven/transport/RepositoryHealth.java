@@ -0,0 +1,154 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.net.URL;
+import java.time.Instant;
+
+/**
+ * Snapshot of repository health, as seen by {@link CircuitBreakerTransport}
+ *
+ * @author Mark Vainomaa
+ */
+public final class RepositoryHealth {
+    private final URL repository;
+    private final State state;
+    private final int consecutiveFailures;
+    private final long totalFailures;
+    private final Throwable lastFailure;
+    private final Instant retryAt;
+
+    RepositoryHealth(@NonNull URL repository, @NonNull State state, int consecutiveFailures, long totalFailures,
+                     @Nullable Throwable lastFailure, @Nullable Instant retryAt) {
+        this.repository = repository;
+        this.state = state;
+        this.consecutiveFailures = consecutiveFailures;
+        this.totalFailures = totalFailures;
+        this.lastFailure = lastFailure;
+        this.retryAt = retryAt;
+    }
+
+    /**
+     * Gets repository URL
+     *
+     * @return Repository URL
+     */
+    @NonNull
+    public URL getRepository() {
+        return repository;
+    }
+
+    /**
+     * Gets circuit breaker state
+     *
+     * @return Circuit breaker state
+     */
+    @NonNull
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns whether repository is currently used
+     *
+     * @return Whether circuit breaker is not {@link State#OPEN}
+     */
+    public boolean isAvailable() {
+        return state != State.OPEN;
+    }
+
+    /**
+     * Gets number of connection failures since last successful request
+     *
+     * @return Number of consecutive connection failures
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Gets number of all connection failures
+     *
+     * @return Number of connection failures
+     */
+    public long getTotalFailures() {
+        return totalFailures;
+    }
+
+    /**
+     * Gets last connection failure
+     *
+     * @return Last connection failure, or {@code null} if there hasn't been any
+     */
+    @Nullable
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Gets time when repository will be probed again
+     *
+     * @return Time of the next probe, or {@code null} if circuit breaker is not {@link State#OPEN}
+     */
+    @Nullable
+    public Instant getRetryAt() {
+        return retryAt;
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryHealth{" +
+                "repository=" + repository +
+                ", state=" + state +
+                ", consecutiveFailures=" + consecutiveFailures +
+                ", totalFailures=" + totalFailures +
+                ", retryAt=" + retryAt +
+                '}';
+    }
+
+    /**
+     * Circuit breaker states
+     */
+    public enum State {
+        /**
+         * Repository is healthy and used normally
+         */
+        CLOSED,
+
+        /**
+         * Repository is down and skipped until cooldown passes
+         */
+        OPEN,
+
+        /**
+         * Cooldown has passed, and a single probe request is let through to see whether repository is back up
+         */
+        HALF_OPEN
+    }
+}
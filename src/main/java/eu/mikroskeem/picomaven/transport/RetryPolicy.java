@@ -0,0 +1,205 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Policy for retrying transient request failures, see {@link RetryingTransport}
+ *
+ * @author Mark Vainomaa
+ */
+public final class RetryPolicy {
+    /**
+     * Policy which never retries
+     */
+    public static final RetryPolicy NONE = new Builder().withMaxAttempts(1).build();
+
+    /**
+     * Default policy: 3 attempts with exponential backoff starting from 100 milliseconds
+     */
+    public static final RetryPolicy DEFAULT = new Builder().build();
+
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final double multiplier;
+    private final double jitter;
+    private final Duration maxRetryAfter;
+
+    private RetryPolicy(@NonNull Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.maxRetryAfter = builder.maxRetryAfter;
+    }
+
+    /**
+     * Gets maximum number of attempts, including the first one
+     *
+     * @return Maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Gets longest {@code Retry-After} delay which is honored. Responses asking to wait longer are not retried
+     *
+     * @return Longest honored {@code Retry-After} delay
+     */
+    @NonNull
+    public Duration getMaxRetryAfter() {
+        return maxRetryAfter;
+    }
+
+    /**
+     * Computes delay before given retry
+     *
+     * @param attempt Number of failed attempt, starting from 1
+     * @return Delay before next attempt
+     */
+    @NonNull
+    public Duration getBackoff(int attempt) {
+        double backoff = initialBackoff.toMillis() * Math.pow(multiplier, attempt - 1);
+        backoff = Math.min(backoff, maxBackoff.toMillis());
+
+        // Randomize part of the delay, so clients failed at the same time won't retry at the same time
+        double randomized = backoff * jitter;
+        backoff = backoff - randomized + ThreadLocalRandom.current().nextDouble() * randomized;
+        return Duration.ofMillis((long) backoff);
+    }
+
+    /**
+     * Returns whether response with given status code is a transient failure and should be retried
+     *
+     * @param statusCode Response status code
+     * @return Whether response should be retried
+     */
+    public boolean isRetryable(int statusCode) {
+        switch (statusCode) {
+            case 408: // Request Timeout
+            case 429: // Too Many Requests
+            case 500: // Internal Server Error
+            case 502: // Bad Gateway
+            case 503: // Service Unavailable
+            case 504: // Gateway Timeout
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * {@link RetryPolicy} builder
+     */
+    public static final class Builder {
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(100);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        private double multiplier = 2.0;
+        private double jitter = 0.5;
+        private Duration maxRetryAfter = Duration.ofSeconds(10);
+
+        /**
+         * Set maximum number of attempts, including the first one. Defaults to 3
+         *
+         * @param maxAttempts Maximum number of attempts
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withMaxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("At least one attempt is required");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Set exponential backoff parameters. Defaults to 100 milliseconds initial backoff, which doubles
+         * after every attempt up to 2 seconds
+         *
+         * @param initialBackoff Delay before first retry
+         * @param maxBackoff Maximum delay between retries
+         * @param multiplier Delay multiplier applied after every attempt
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withBackoff(@NonNull Duration initialBackoff, @NonNull Duration maxBackoff, double multiplier) {
+            if (multiplier < 1.0) {
+                throw new IllegalArgumentException("Multiplier must be at least 1.0");
+            }
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Set jitter, which is the randomized fraction of every delay. Defaults to 0.5, meaning that delay
+         * is between 50% and 100% of computed backoff
+         *
+         * @param jitter Jitter between 0.0 and 1.0
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withJitter(double jitter) {
+            if (jitter < 0.0 || jitter > 1.0) {
+                throw new IllegalArgumentException("Jitter must be between 0.0 and 1.0");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Set longest {@code Retry-After} delay which is honored. Defaults to 10 seconds
+         *
+         * @param maxRetryAfter Longest honored {@code Retry-After} delay
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withMaxRetryAfter(@NonNull Duration maxRetryAfter) {
+            this.maxRetryAfter = maxRetryAfter;
+            return this;
+        }
+
+        /**
+         * Build {@link RetryPolicy} instance
+         *
+         * @return Instance of {@link RetryPolicy}
+         */
+        @NonNull
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link Transport} decorator which retries transient failures according to {@link RetryPolicy}. Connection
+ * failures and responses with status codes deemed retryable by the policy are retried with exponential backoff,
+ * honoring {@code Retry-After} header. Missing resources (404) are never retried. Waiting between attempts
+ * does not block any threads.
+ * <p>
+ * Only the exchange up to response headers is retried, as response body is read by the caller. Callers which
+ * can start reading the body over can use {@link #getBodyRetryDelay(TransportRequest, int, IOException)} to retry
+ * failed body reads according to the same policy.
+ *
+ * @author Mark Vainomaa
+ */
+public final class RetryingTransport implements Transport {
+    private static final Logger logger = LoggerFactory.getLogger(RetryingTransport.class);
+
+    private final Transport transport;
+    private final RetryPolicy defaultPolicy;
+    private final Map<String, RetryPolicy> repositoryPolicies;
+    private final boolean retryConnectionFailures;
+
+    /**
+     * Creates a new {@link RetryingTransport} using same policy for all repositories
+     *
+     * @param transport Transport to decorate
+     * @param policy Retry policy
+     */
+    public RetryingTransport(@NonNull Transport transport, @NonNull RetryPolicy policy) {
+        this(transport, policy, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a new {@link RetryingTransport}
+     *
+     * @param transport Transport to decorate
+     * @param defaultPolicy Retry policy used for repositories without their own policy
+     * @param repositoryPolicies Repository specific retry policies, keyed by {@link URL#toExternalForm()} of the repository
+     *                           (looking up by {@link URL} would resolve its host name on every request)
+     */
+    public RetryingTransport(@NonNull Transport transport, @NonNull RetryPolicy defaultPolicy,
+                             @NonNull Map<String, RetryPolicy> repositoryPolicies) {
+        this(transport, defaultPolicy, repositoryPolicies, true);
+    }
+
+    /**
+     * Creates a new {@link RetryingTransport}
+     *
+     * @param transport Transport to decorate
+     * @param defaultPolicy Retry policy used for repositories without their own policy
+     * @param repositoryPolicies Repository specific retry policies, keyed by {@link URL#toExternalForm()} of the repository
+     * @param retryConnectionFailures Whether to retry failures to connect. Should be {@code false} when decorating
+     *                                {@link CircuitBreakerTransport}, so a request to a repository which is down fails after
+     *                                a single connect timeout, and its own retries don't open the breaker
+     */
+    public RetryingTransport(@NonNull Transport transport, @NonNull RetryPolicy defaultPolicy,
+                             @NonNull Map<String, RetryPolicy> repositoryPolicies, boolean retryConnectionFailures) {
+        this.transport = transport;
+        this.defaultPolicy = defaultPolicy;
+        this.repositoryPolicies = repositoryPolicies;
+        this.retryConnectionFailures = retryConnectionFailures;
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<@NonNull TransportResponse> execute(@NonNull TransportRequest request) {
+        RetryPolicy policy = getPolicy(request.getRepository());
+        if (policy.getMaxAttempts() == 1) {
+            return transport.execute(request);
+        }
+
+        CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+        attempt(request, policy, 1, future);
+        return future;
+    }
+
+    /**
+     * Gets retry policy used for given repository
+     *
+     * @param repository Repository URL, or {@code null} for requests not made to a repository
+     * @return Retry policy
+     */
+    @NonNull
+    public RetryPolicy getPolicy(@Nullable URL repository) {
+        return repository != null
+                ? repositoryPolicies.getOrDefault(repository.toExternalForm(), defaultPolicy)
+                : defaultPolicy;
+    }
+
+    /**
+     * Gets delay before sending given request again, after reading its response body failed midway
+     *
+     * @param request Request which response body failed to be read
+     * @param attempt Number of failed attempt, starting from 1
+     * @param e Failure thrown by response body
+     * @return Delay before next attempt, or {@code null} if request should not be retried
+     */
+    @Nullable
+    public Duration getBodyRetryDelay(@NonNull TransportRequest request, int attempt, @NonNull IOException e) {
+        RetryPolicy policy = getPolicy(request.getRepository());
+        return attempt < policy.getMaxAttempts() ? getRetryDelay(policy, attempt, null, e) : null;
+    }
+
+    private void attempt(@NonNull TransportRequest request, @NonNull RetryPolicy policy, int attempt,
+                         @NonNull CompletableFuture<TransportResponse> future) {
+        if (future.isDone()) {
+            // Cancelled while waiting
+            return;
+        }
+
+        CompletableFuture<TransportResponse> exchange = transport.execute(request);
+        future.whenComplete((response, e) -> {
+            if (e != null) {
+                exchange.cancel(true);
+            }
+        });
+        exchange.whenComplete((response, e) -> {
+            Duration delay = attempt < policy.getMaxAttempts() ? getRetryDelay(policy, attempt, response, e) : null;
+            if (delay == null) {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else if (!future.complete(response)) {
+                    closeQuietly(response);
+                }
+                return;
+            }
+
+            if (response != null) {
+                logger.debug("Request to {} failed with status code {}, retrying in {} ms (attempt {}/{})",
+                        request.getUrl(), response.getStatusCode(), delay.toMillis(), attempt + 1, policy.getMaxAttempts());
+                closeQuietly(response);
+            } else {
+                logger.debug("Request to {} failed: {}, retrying in {} ms (attempt {}/{})",
+                        request.getUrl(), TaskUtils.unwrapException(e).toString(), delay.toMillis(), attempt + 1, policy.getMaxAttempts());
+            }
+            TaskUtils.delay(delay).thenRun(() -> attempt(request, policy, attempt + 1, future));
+        });
+    }
+
+    @Nullable
+    private Duration getRetryDelay(@NonNull RetryPolicy policy, int attempt,
+                                   @Nullable TransportResponse response, @Nullable Throwable t) {
+        if (t != null) {
+            Exception e = TaskUtils.unwrapException(t);
+            // Unknown hosts won't appear in a moment, unavailable repositories are skipped on purpose,
+            // and other exceptions are not I/O related (e.g cancellation)
+            boolean transientFailure = e instanceof IOException && !(e instanceof UnknownHostException)
+                    && !(e instanceof RepositoryUnavailableException)
+                    && (retryConnectionFailures || !CircuitBreakerTransport.isConnectionFailure(e));
+            return transientFailure ? policy.getBackoff(attempt) : null;
+        }
+
+        if (response == null || !policy.isRetryable(response.getStatusCode())) {
+            return null;
+        }
+
+        Duration retryAfter = parseRetryAfter(response.getHeader("Retry-After"));
+        if (retryAfter == null) {
+            return policy.getBackoff(attempt);
+        }
+        if (retryAfter.compareTo(policy.getMaxRetryAfter()) > 0) {
+            logger.debug("Not retrying {}, server asked to wait {} seconds", response.getRequest().getUrl(), retryAfter.getSeconds());
+            return null;
+        }
+        return retryAfter;
+    }
+
+    @Nullable
+    private static Duration parseRetryAfter(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+
+        // Either delay in seconds or HTTP date
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            Instant date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            Duration delay = Duration.between(Instant.now(), date);
+            return delay.isNegative() ? Duration.ZERO : delay;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(@NonNull TransportResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            logger.trace("Failed to close response of {}", response.getRequest(), e);
+        }
+    }
+}
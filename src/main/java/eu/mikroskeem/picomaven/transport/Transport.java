@@ -0,0 +1,63 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Performs requests to repositories. All repository I/O done by PicoMaven goes through a transport,
+ * so it can be replaced e.g with a HTTP/2 client or an in-process implementation for tests.
+ *
+ * @author Mark Vainomaa
+ * @see HttpUrlConnectionTransport
+ * @see Transports
+ */
+public interface Transport extends Closeable {
+    /**
+     * Executes given request. Returned future completes when response status and headers are available,
+     * body is streamed afterwards using {@link TransportResponse#getBody()}. Responses with any status code
+     * complete the future normally, it's completed exceptionally only when no response was received at all
+     * (e.g connection failed or timed out). Cancelling the returned future aborts the request.
+     *
+     * @param request Request to execute
+     * @return Future of {@link TransportResponse}, which must be closed by the caller
+     */
+    @NonNull
+    CompletableFuture<@NonNull TransportResponse> execute(@NonNull TransportRequest request);
+
+    /**
+     * Releases resources held by this transport, like connection pools and threads.
+     * No requests can be executed afterwards.
+     *
+     * @throws IOException If closing fails
+     */
+    @Override
+    default void close() throws IOException {}
+}
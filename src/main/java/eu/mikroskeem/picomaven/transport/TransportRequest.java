@@ -0,0 +1,364 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request to be executed by {@link Transport}
+ *
+ * @author Mark Vainomaa
+ */
+public final class TransportRequest {
+    private final URL url;
+    private final Method method;
+    private final URL repository;
+    private final Map<String, String> headers;
+    private final String ifNoneMatch;
+    private final Instant ifModifiedSince;
+    private final long rangeStart;
+    private final long rangeEnd;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+
+    private TransportRequest(@NonNull Builder builder) {
+        this.url = builder.url;
+        this.method = builder.method;
+        this.repository = builder.repository;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(builder.headers));
+        this.ifNoneMatch = builder.ifNoneMatch;
+        this.ifModifiedSince = builder.ifModifiedSince;
+        this.rangeStart = builder.rangeStart;
+        this.rangeEnd = builder.rangeEnd;
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+    }
+
+    /**
+     * Gets requested URL
+     *
+     * @return Requested URL
+     */
+    @NonNull
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets request method
+     *
+     * @return Request method
+     */
+    @NonNull
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets repository which this request is made to
+     *
+     * @return Repository URL, or {@code null} if request is not made to a repository
+     */
+    @Nullable
+    public URL getRepository() {
+        return repository;
+    }
+
+    /**
+     * Gets additional request headers
+     *
+     * @return Map of header names and values
+     */
+    @NonNull
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Gets entity tag used for conditional request
+     *
+     * @return Entity tag, or {@code null} if not set
+     */
+    @Nullable
+    public String getIfNoneMatch() {
+        return ifNoneMatch;
+    }
+
+    /**
+     * Gets modification time used for conditional request
+     *
+     * @return Modification time, or {@code null} if not set
+     */
+    @Nullable
+    public Instant getIfModifiedSince() {
+        return ifModifiedSince;
+    }
+
+    /**
+     * Gets first requested byte offset
+     *
+     * @return First requested byte offset, or {@code -1} if whole resource is requested
+     */
+    public long getRangeStart() {
+        return rangeStart;
+    }
+
+    /**
+     * Gets last requested byte offset, inclusive
+     *
+     * @return Last requested byte offset, or {@code -1} if range is open-ended
+     */
+    public long getRangeEnd() {
+        return rangeEnd;
+    }
+
+    /**
+     * Gets connect timeout
+     *
+     * @return Connect timeout, or {@code null} if transport default should be used
+     */
+    @Nullable
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Gets read timeout, which is the maximum time to wait for response or next chunk of its body
+     *
+     * @return Read timeout, or {@code null} if transport default should be used
+     */
+    @Nullable
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Creates a new builder initialized with this request's properties, e.g for decorating transports
+     *
+     * @return Instance of {@link Builder}
+     */
+    @NonNull
+    public Builder toBuilder() {
+        Builder builder = new Builder(url)
+                .withMethod(method)
+                .withRepository(repository)
+                .withIfNoneMatch(ifNoneMatch)
+                .withIfModifiedSince(ifModifiedSince)
+                .withConnectTimeout(connectTimeout)
+                .withReadTimeout(readTimeout);
+        builder.headers.putAll(headers);
+        builder.rangeStart = rangeStart;
+        builder.rangeEnd = rangeEnd;
+        return builder;
+    }
+
+    /**
+     * Returns whether this is a conditional request
+     *
+     * @return Whether this is a conditional request
+     */
+    public boolean isConditional() {
+        return ifNoneMatch != null || ifModifiedSince != null;
+    }
+
+    /**
+     * Returns whether this is a ranged request
+     *
+     * @return Whether this is a ranged request
+     */
+    public boolean isRanged() {
+        return rangeStart >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportRequest{" +
+                "method=" + method +
+                ", url=" + url +
+                ", repository=" + repository +
+                '}';
+    }
+
+    /**
+     * Request methods
+     */
+    public enum Method {
+        /**
+         * Retrieve resource with its body
+         */
+        GET,
+
+        /**
+         * Retrieve only resource status and headers
+         */
+        HEAD
+    }
+
+    /**
+     * {@link TransportRequest} builder
+     */
+    public static final class Builder {
+        private final URL url;
+        private Method method = Method.GET;
+        private URL repository = null;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private String ifNoneMatch = null;
+        private Instant ifModifiedSince = null;
+        private long rangeStart = -1;
+        private long rangeEnd = -1;
+        private Duration connectTimeout = null;
+        private Duration readTimeout = null;
+
+        /**
+         * Creates a new {@link Method#GET} request builder
+         *
+         * @param url Requested URL
+         */
+        public Builder(@NonNull URL url) {
+            this.url = url;
+        }
+
+        /**
+         * Set request method. Defaults to {@link Method#GET}
+         *
+         * @param method Request method
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withMethod(@NonNull Method method) {
+            this.method = method;
+            return this;
+        }
+
+        /**
+         * Set repository which request is made to
+         *
+         * @param repository Repository URL
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withRepository(@Nullable URL repository) {
+            this.repository = repository;
+            return this;
+        }
+
+        /**
+         * Add a request header
+         *
+         * @param name Header name
+         * @param value Header value
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withHeader(@NonNull String name, @NonNull String value) {
+            this.headers.put(name, value);
+            return this;
+        }
+
+        /**
+         * Make request conditional on resource's entity tag
+         *
+         * @param entityTag Entity tag of previously retrieved resource
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withIfNoneMatch(@Nullable String entityTag) {
+            this.ifNoneMatch = entityTag;
+            return this;
+        }
+
+        /**
+         * Make request conditional on resource's modification time
+         *
+         * @param modifiedSince Modification time of previously retrieved resource
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withIfModifiedSince(@Nullable Instant modifiedSince) {
+            this.ifModifiedSince = modifiedSince;
+            return this;
+        }
+
+        /**
+         * Request only given byte range of the resource
+         *
+         * @param start First byte offset
+         * @param end Last byte offset, inclusive, or {@code -1} to request until the end
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withRange(long start, long end) {
+            if (start < 0 || (end >= 0 && end < start)) {
+                throw new IllegalArgumentException("Invalid range: " + start + "-" + end);
+            }
+            this.rangeStart = start;
+            this.rangeEnd = end;
+            return this;
+        }
+
+        /**
+         * Set connect timeout
+         *
+         * @param connectTimeout Connect timeout, or {@code null} to use transport default
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withConnectTimeout(@Nullable Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Set read timeout
+         *
+         * @param readTimeout Read timeout, or {@code null} to use transport default
+         * @return this (for chaining)
+         */
+        @NonNull
+        public Builder withReadTimeout(@Nullable Duration readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * Build {@link TransportRequest} instance
+         *
+         * @return Instance of {@link TransportRequest}
+         */
+        @NonNull
+        public TransportRequest build() {
+            return new TransportRequest(this);
+        }
+    }
+}
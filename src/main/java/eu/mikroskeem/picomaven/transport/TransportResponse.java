@@ -0,0 +1,128 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response to a {@link TransportRequest}. Response must be closed after use to release underlying connection.
+ *
+ * @author Mark Vainomaa
+ */
+public interface TransportResponse extends Closeable {
+    /**
+     * Gets request which this response belongs to
+     *
+     * @return {@link TransportRequest}
+     */
+    @NonNull
+    TransportRequest getRequest();
+
+    /**
+     * Gets response status code. Non-HTTP transports should use HTTP status codes as well,
+     * e.g {@code 404} for missing files
+     *
+     * @return Response status code
+     */
+    int getStatusCode();
+
+    /**
+     * Gets all response headers
+     *
+     * @return Map of header names and their values
+     */
+    @NonNull
+    Map<String, List<String>> getHeaders();
+
+    /**
+     * Gets response header value. Header names are case-insensitive
+     *
+     * @param name Header name
+     * @return Header value, or {@code null} if header is not present
+     */
+    @Nullable
+    default String getHeader(@NonNull String name) {
+        for (Map.Entry<String, List<String>> header : getHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets response body stream. Body is empty for {@link TransportRequest.Method#HEAD} requests
+     *
+     * @return Response body stream
+     * @throws IOException If body can't be read
+     */
+    @NonNull
+    InputStream getBody() throws IOException;
+
+    /**
+     * Forcibly aborts this response, releasing the underlying connection without draining it. Unlike
+     * {@link #close()}, this may be called from another thread while body is being read.
+     *
+     * @throws IOException If aborting fails
+     */
+    default void abort() throws IOException {
+        close();
+    }
+
+    /**
+     * Returns whether request succeeded
+     *
+     * @return Whether status code is 2xx
+     */
+    default boolean isSuccess() {
+        return getStatusCode() >= 200 && getStatusCode() < 300;
+    }
+
+    /**
+     * Returns whether requested resource does not exist
+     *
+     * @return Whether status code is 404 or 410
+     */
+    default boolean isNotFound() {
+        return getStatusCode() == 404 || getStatusCode() == 410;
+    }
+
+    /**
+     * Returns whether resource was not modified since last conditional request
+     *
+     * @return Whether status code is 304
+     */
+    default boolean isNotModified() {
+        return getStatusCode() == 304;
+    }
+}
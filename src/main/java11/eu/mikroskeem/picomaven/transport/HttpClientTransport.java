@@ -0,0 +1,354 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven.transport;
+
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link Transport} implementation using {@link HttpClient}. Requests to the same repository are multiplexed
+ * over a single HTTP/2 connection when server supports it, otherwise HTTP/1.1 is used. Non-HTTP URLs are passed
+ * to the fallback transport.
+ *
+ * @author Mark Vainomaa
+ */
+final class HttpClientTransport implements Transport {
+    private static final Duration MIN_TIMEOUT = Duration.ofMillis(1);
+
+    private final ExecutorService clientExecutor;
+    private final HttpClient client;
+    private final ConcurrentMap<Duration, HttpClient> connectTimeoutClients = new ConcurrentHashMap<>();
+    private final Transport fallback;
+
+    HttpClientTransport(@NonNull Transport fallback) {
+        // Client uses its own executor, as response bodies are read from blocking streams on PicoMaven's executor
+        this.clientExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "PicoMaven HttpClient");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = newClient().build();
+        this.fallback = fallback;
+    }
+
+    private HttpClient.Builder newClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(clientExecutor);
+    }
+
+    @NonNull
+    private HttpClient client(@Nullable Duration connectTimeout) {
+        if (connectTimeout == null) {
+            return client;
+        }
+
+        // HttpClient only has a connect timeout per client, so there's a client for every timeout in use
+        return connectTimeoutClients.computeIfAbsent(connectTimeout, timeout -> newClient()
+                .connectTimeout(timeout.compareTo(MIN_TIMEOUT) < 0 ? MIN_TIMEOUT : timeout)
+                .build());
+    }
+
+    @NonNull
+    @Override
+    public CompletableFuture<@NonNull TransportResponse> execute(@NonNull TransportRequest request) {
+        String protocol = request.getUrl().getProtocol();
+        if (!"http".equals(protocol) && !"https".equals(protocol)) {
+            return fallback.execute(request);
+        }
+
+        HttpRequest httpRequest;
+        try {
+            httpRequest = buildRequest(request);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("Invalid URL " + request.getUrl(), e));
+            return future;
+        }
+
+        CompletableFuture<HttpResponse<InputStream>> exchange = client(request.getConnectTimeout())
+                .sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<TransportResponse> future = exchange
+                .<TransportResponse>thenApply(response -> new ClientResponse(request, response))
+                .exceptionally(t -> {
+                    throw new CompletionException(translateException(t instanceof CompletionException ? t.getCause() : t));
+                });
+        future.whenComplete((response, e) -> {
+            if (e instanceof CancellationException) {
+                exchange.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Client has no close method before Java 21, its selector thread exits once client is garbage collected
+        clientExecutor.shutdownNow();
+        fallback.close();
+    }
+
+    @NonNull
+    private static HttpRequest buildRequest(@NonNull TransportRequest request) throws URISyntaxException {
+        URL url = request.getUrl();
+        URI uri = new URI(url.getProtocol(), null, url.getHost(), url.getPort(), url.getPath(), url.getQuery(), null);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .method(request.getMethod().name(), HttpRequest.BodyPublishers.noBody())
+                .header("User-Agent", HttpUrlConnectionTransport.USER_AGENT);
+
+        // Request timeout covers connecting and waiting for headers, body reads are timed by ReadTimeoutInputStream
+        if (request.getConnectTimeout() != null || request.getReadTimeout() != null) {
+            Duration timeout = Duration.ZERO;
+            timeout = request.getConnectTimeout() != null ? timeout.plus(request.getConnectTimeout()) : timeout;
+            timeout = request.getReadTimeout() != null ? timeout.plus(request.getReadTimeout()) : timeout;
+            builder.timeout(timeout);
+        }
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            builder.setHeader(header.getKey(), header.getValue());
+        }
+
+        // Authentication
+        if (url.getUserInfo() != null) {
+            byte[] encodedBytes = Base64.getEncoder().encode(url.getUserInfo().getBytes(StandardCharsets.UTF_8));
+            builder.setHeader("Authorization", "Basic " + new String(encodedBytes, StandardCharsets.UTF_8));
+        }
+
+        // Conditional and ranged requests
+        if (request.getIfNoneMatch() != null) {
+            builder.setHeader("If-None-Match", request.getIfNoneMatch());
+        }
+        if (request.getIfModifiedSince() != null) {
+            builder.setHeader("If-Modified-Since",
+                    DateTimeFormatter.RFC_1123_DATE_TIME.format(request.getIfModifiedSince().atOffset(ZoneOffset.UTC)));
+        }
+        if (request.isRanged()) {
+            builder.setHeader("Range", "bytes=" + request.getRangeStart() + '-'
+                    + (request.getRangeEnd() >= 0 ? String.valueOf(request.getRangeEnd()) : ""));
+        }
+        return builder.build();
+    }
+
+    @NonNull
+    private static Throwable translateException(@NonNull Throwable t) {
+        // Map HttpClient exceptions to the ones HttpURLConnection throws, so callers can classify them the same way
+        if (t instanceof HttpConnectTimeoutException) {
+            return new ConnectTimeoutException(t.getMessage(), t);
+        }
+        if (t instanceof HttpTimeoutException) {
+            SocketTimeoutException e = new SocketTimeoutException(t.getMessage());
+            e.initCause(t);
+            return e;
+        }
+        if (t instanceof ConnectException && t.getCause() instanceof UnresolvedAddressException) {
+            UnknownHostException e = new UnknownHostException(t.getMessage());
+            e.initCause(t);
+            return e;
+        }
+        return t;
+    }
+
+    private static final class ClientResponse implements TransportResponse {
+        private final TransportRequest request;
+        private final HttpResponse<InputStream> response;
+        private final InputStream body;
+
+        private ClientResponse(@NonNull TransportRequest request, @NonNull HttpResponse<InputStream> response) {
+            this.request = request;
+            this.response = response;
+            this.body = request.getReadTimeout() != null
+                    ? new ReadTimeoutInputStream(response.body(), request.getReadTimeout())
+                    : response.body();
+        }
+
+        @NonNull
+        @Override
+        public TransportRequest getRequest() {
+            return request;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.statusCode();
+        }
+
+        @NonNull
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            return response.headers().map();
+        }
+
+        @NonNull
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closing the stream before reaching its end cancels the HTTP/2 stream, leaving the connection open
+            body.close();
+        }
+    }
+
+    /**
+     * Response body stream which aborts the exchange when a single read blocks longer than read timeout,
+     * like socket read timeout does for {@link java.net.HttpURLConnection}. Reads only update a timestamp,
+     * a single watchdog per stream checks it once per timeout period
+     */
+    private static final class ReadTimeoutInputStream extends FilterInputStream {
+        private final Duration readTimeout;
+        private final long readTimeoutNanos;
+        private volatile long lastProgress;
+        private volatile boolean reading = false;
+        private volatile boolean finished = false;
+        private volatile boolean timedOut = false;
+        private boolean watchdogStarted = false;
+
+        private ReadTimeoutInputStream(@NonNull InputStream in, @NonNull Duration readTimeout) {
+            super(in);
+            this.readTimeout = readTimeout;
+            this.readTimeoutNanos = Math.max(readTimeout.toNanos(), 1);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = (int) timed(() -> in.read());
+            finished = result == -1;
+            return result;
+        }
+
+        @Override
+        public int read(byte @NonNull [] b, int off, int len) throws IOException {
+            int result = (int) timed(() -> in.read(b, off, len));
+            finished = result == -1;
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return timed(() -> in.skip(n));
+        }
+
+        @Override
+        public void close() throws IOException {
+            finished = true;
+            super.close();
+        }
+
+        private long timed(@NonNull BlockingRead read) throws IOException {
+            lastProgress = System.nanoTime();
+            reading = true;
+            if (!watchdogStarted) {
+                // Started lazily, so bodies which are never read don't keep it running
+                watchdogStarted = true;
+                watch(readTimeoutNanos);
+            }
+            try {
+                long result = read.read();
+                if (timedOut) {
+                    throw new SocketTimeoutException("Read timed out after " + readTimeout);
+                }
+                return result;
+            } catch (IOException e) {
+                if (timedOut && !(e instanceof SocketTimeoutException)) {
+                    SocketTimeoutException timeout = new SocketTimeoutException("Read timed out after " + readTimeout);
+                    timeout.initCause(e);
+                    throw timeout;
+                }
+                throw e;
+            } finally {
+                lastProgress = System.nanoTime();
+                reading = false;
+            }
+        }
+
+        private void watch(long delayNanos) {
+            TaskUtils.delay(Duration.ofNanos(delayNanos)).thenRun(this::check);
+        }
+
+        private void check() {
+            if (finished) {
+                return;
+            }
+            if (!reading) {
+                // Reader is busy elsewhere, read started after this check gets the full timeout
+                watch(readTimeoutNanos);
+                return;
+            }
+
+            long blocked = System.nanoTime() - lastProgress;
+            if (blocked < readTimeoutNanos) {
+                watch(readTimeoutNanos - blocked);
+                return;
+            }
+
+            // Closing the stream unblocks the reader
+            timedOut = true;
+            finished = true;
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlockingRead {
+        long read() throws IOException;
+    }
+}
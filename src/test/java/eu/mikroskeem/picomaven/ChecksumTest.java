@@ -0,0 +1,169 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.ArtifactChecksum;
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.transport.HttpUrlConnectionTransport;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Tests artifact checksum verification
+ *
+ * @author Mark Vainomaa
+ */
+public class ChecksumTest {
+    @TempDir
+    Path tempDir;
+
+    private TestRepository repository;
+    private Path downloadDir;
+
+    @BeforeEach
+    public void setUp() {
+        downloadDir = tempDir.resolve("libraries");
+    }
+
+    private static String hex(String algorithm, byte[] data) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance(algorithm).digest(data)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testChecksumHeaders() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1");
+        String sha1 = hex("SHA-1", Files.readAllBytes(tempDir.resolve("repository/test/a/1/a-1.jar")));
+
+        // Mismatching checksum fails the download, so the matching one is checked against a fresh download
+        for (String checksum : Arrays.asList("0000000000000000000000000000000000000000", sha1)) {
+            ExecutorService executorService = Executors.newCachedThreadPool();
+            TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService))
+                    .header("X-Checksum-Sha1", checksum);
+            try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1"))
+                    .withTransport(transport)
+                    .build()) {
+                DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get();
+                Assertions.assertEquals(checksum.equals(sha1), result.isSuccess());
+            }
+
+            // Checksum files are not fetched separately
+            Assertions.assertTrue(transport.getRequests().stream().noneMatch(TestTransport.path(".sha1").or(TestTransport.path(".md5"))));
+        }
+    }
+
+    @Test
+    public void testChecksumPolicy() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1");
+        ChecksumPolicy strongestOrFail = new ChecksumPolicy.Builder()
+                .withAlgorithms(ArtifactChecksum.ChecksumAlgo.SHA256, ArtifactChecksum.ChecksumAlgo.SHA1, ArtifactChecksum.ChecksumAlgo.MD5)
+                .withFirstAvailableOnly(true)
+                .withOnMissing(ChecksumPolicy.OnMissing.FAIL)
+                .build();
+
+        // Pinned only policy doesn't fetch any checksums
+        List<String> checksumRequests = downloadWithChecksumPolicy(ChecksumPolicy.PINNED_ONLY, true);
+        Assertions.assertEquals(Collections.emptyList(), checksumRequests);
+        Files.walk(downloadDir).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+
+        // Artifact without any checksums fails, after trying every algorithm in order
+        checksumRequests = downloadWithChecksumPolicy(strongestOrFail, false);
+        Assertions.assertEquals(Arrays.asList("sha256", "sha1", "md5"), checksumRequests);
+
+        // Fetching stops at first available checksum
+        Path directory = tempDir.resolve("repository/test/a/1");
+        String sha1 = hex("SHA-1", Files.readAllBytes(directory.resolve("a-1.jar")));
+        Files.write(directory.resolve("a-1.jar.sha1"), sha1.getBytes(StandardCharsets.UTF_8));
+        checksumRequests = downloadWithChecksumPolicy(strongestOrFail, true);
+        Assertions.assertEquals(Arrays.asList("sha256", "sha1"), checksumRequests);
+    }
+
+    private List<String> downloadWithChecksumPolicy(ChecksumPolicy checksumPolicy, boolean success) throws Exception {
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1"))
+                .withChecksumPolicy(checksumPolicy)
+                .withTransport(transport)
+                .build()) {
+            DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get();
+            Assertions.assertEquals(success, result.isSuccess());
+        }
+
+        // Extensions of requested checksum files, in request order
+        return transport.getRequests(request -> request.getUrl().getPath().contains(".jar.")).stream()
+                .map(request -> request.getUrl().getPath())
+                .map(path -> path.substring(path.lastIndexOf('.') + 1))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testArtifactMovedAfterVerification() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1");
+        byte[] jar = Files.readAllBytes(tempDir.resolve("repository/test/a/1/a-1.jar"));
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        String sha256 = Base64.getEncoder().encodeToString(md.digest(jar));
+
+        for (String checksum : Arrays.asList(Base64.getEncoder().encodeToString(new byte[32]), sha256)) {
+            ArtifactChecksum pinned = new ArtifactChecksum(ArtifactChecksum.ChecksumAlgo.SHA256,
+                    ArtifactChecksum.ChecksumEncoding.BASE64, checksum);
+            Dependency dependency = new Dependency("test", "a", "1", null, true, Collections.singletonList(pinned));
+            try (PicoMaven picoMaven = repository.builder(downloadDir, null, dependency).build()) {
+                DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get();
+                Assertions.assertEquals(checksum.equals(sha256), result.isSuccess());
+            }
+
+            // Nothing is left behind on failure, and only verified artifact is moved into place
+            Path target = downloadDir.resolve("test/a/1/a-1.jar");
+            Assertions.assertFalse(Files.exists(target.resolveSibling("a-1.jar.tmp")));
+            if (checksum.equals(sha256)) {
+                Assertions.assertArrayEquals(jar, Files.readAllBytes(target));
+            } else {
+                Assertions.assertFalse(Files.exists(target));
+            }
+        }
+    }
+}
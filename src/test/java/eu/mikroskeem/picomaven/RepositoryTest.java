@@ -0,0 +1,266 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.transport.HttpUrlConnectionTransport;
+import eu.mikroskeem.picomaven.transport.RepositoryHealth;
+import eu.mikroskeem.picomaven.transport.TransportRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests how repositories are picked and accessed through transport
+ *
+ * @author Mark Vainomaa
+ */
+public class RepositoryTest {
+    @TempDir
+    Path tempDir;
+
+    private TestRepository repository;
+    private Path downloadDir;
+
+    @BeforeEach
+    public void setUp() {
+        repository = new TestRepository(tempDir.resolve("repository"));
+        downloadDir = tempDir.resolve("libraries");
+    }
+
+    @Test
+    public void testCustomTransport() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1")
+                .artifact("test:b:1");
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1"))
+                .withTransport(transport)
+                .build()) {
+            DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get();
+            Assertions.assertTrue(result.isSuccess());
+            Assertions.assertEquals(2, result.getAllDownloadedFiles().size());
+            Assertions.assertTrue(transport.getRequests().stream().anyMatch(TestTransport.path("b-1.jar")));
+            Assertions.assertTrue(transport.getRequests().stream().allMatch(TestTransport.repository(repository.getUri())));
+        }
+    }
+
+    @Test
+    public void testInterruptedDownloadIsRetried() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1");
+
+        // Connection resets while reading the body, after the exchange itself succeeded
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService))
+                .interruptOnce(TestTransport.path("a-1.jar"), new SocketException("Connection reset"));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1"))
+                .withTransport(transport)
+                .build()) {
+            DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get();
+            Assertions.assertTrue(result.isSuccess());
+        }
+        Assertions.assertEquals(2, transport.getRequests(TestTransport.path("a-1.jar")).size());
+        Assertions.assertEquals("test:a:1", new String(Files.readAllBytes(downloadDir.resolve("test/a/1/a-1.jar")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testConnectionFailuresAreNotRetried() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1");
+
+        // With default retry policy and circuit breaker, a single lookup must not open the breaker by itself
+        TestTransport transport = new TestTransport().fail(request -> true, new ConnectException("Connection refused"));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1"))
+                .withTransport(transport)
+                .build()) {
+            Assertions.assertFalse(picoMaven.downloadAllArtifacts().values().iterator().next().get().isSuccess());
+            Assertions.assertEquals(1, transport.getRequests(TestTransport.path("a-1.pom")).size());
+            Assertions.assertEquals(1, transport.getRequests(TestTransport.path("a-1.jar")).size());
+            RepositoryHealth health = picoMaven.getRepositoryHealth().get(repository.getUri().toURL().toExternalForm());
+            Assertions.assertEquals(RepositoryHealth.State.CLOSED, health.getState());
+        }
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1");
+
+        // Transport which never responds
+        TestTransport transport = new TestTransport().hang(request -> true);
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1"))
+                .withTransport(transport)
+                .withDeadline(Duration.ofSeconds(1))
+                .build()) {
+            DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get(5, TimeUnit.SECONDS);
+            Assertions.assertFalse(result.isSuccess());
+            Assertions.assertTrue(result.getDownloadException() instanceof TimeoutException);
+            Assertions.assertFalse(transport.getHangingRequests().isEmpty());
+            Assertions.assertTrue(transport.getHangingRequests().stream().allMatch(CompletableFuture::isCancelled));
+        }
+    }
+
+    @Test
+    public void testNegativeCache() throws Exception {
+        TestRepository empty = new TestRepository(tempDir.resolve("empty"));
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1")
+                .artifact("test:b:1");
+
+        for (int run = 0; run < 2; run++) {
+            ExecutorService executorService = Executors.newCachedThreadPool();
+            TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService));
+            try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1"))
+                    .withRepositories(Arrays.asList(empty.getUri(), repository.getUri()))
+                    .withNegativeCacheTtl(Duration.ofHours(1))
+                    .withTransport(transport)
+                    .build()) {
+                DependencyGraph graph = picoMaven.resolve().get();
+                Assertions.assertEquals(2, graph.getNodes().size());
+            }
+
+            List<TransportRequest> emptyRequests = transport.getRequests(TestTransport.repository(empty.getUri()));
+            if (run == 0) {
+                // Every artifact looked up from empty repository is remembered
+                for (String artifact : Arrays.asList("a", "b")) {
+                    boolean queried = emptyRequests.stream().anyMatch(request -> request.getUrl().getPath().contains("/test/" + artifact + "/"));
+                    Assertions.assertEquals(queried, Files.exists(downloadDir.resolve("test/" + artifact + "/1/" + artifact + "-1.pom.lastUpdated")));
+                }
+            } else {
+                // Second run knows that empty repository doesn't have these artifacts
+                Assertions.assertEquals(Collections.emptyList(), emptyRequests);
+            }
+        }
+    }
+
+    @Test
+    public void testRoutes() throws Exception {
+        TestRepository internal = new TestRepository(tempDir.resolve("internal"))
+                .artifact("com.ourco:b:1", "com.ourco.sub:c:1")
+                .artifact("com.ourco.sub:c:1");
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "com.ourco:b:1")
+                .artifact("com.ourco.sub:c:1", "test:evil:1");
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1"))
+                .withRoute("com.ourco.*", Collections.singletonList(internal.getUri()))
+                .withTransport(transport)
+                .build()) {
+            DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get();
+            Assertions.assertTrue(result.isSuccess());
+            Assertions.assertEquals(3, result.getAllDownloadedFiles().size());
+        }
+
+        URL internalUrl = internal.getUri().toURL();
+        for (TransportRequest request : transport.getRequests()) {
+            boolean routed = request.getUrl().getPath().contains("/com/ourco/");
+            Assertions.assertEquals(routed, internalUrl.equals(request.getRepository()), request.toString());
+        }
+    }
+
+    @Test
+    public void testHedgedLookup() throws Exception {
+        TestRepository hanging = new TestRepository(tempDir.resolve("hanging"));
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1")
+                .artifact("test:b:1");
+
+        // Repository which never responds would stall sequential lookup forever
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService))
+                .hang(TestTransport.repository(hanging.getUri()));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1"))
+                .withRepositories(Arrays.asList(hanging.getUri(), repository.getUri()))
+                .withHedgedLookup(Duration.ZERO)
+                .withTransport(transport)
+                .build()) {
+            DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get(5, TimeUnit.SECONDS);
+            Assertions.assertTrue(result.isSuccess());
+            Assertions.assertEquals(2, result.getAllDownloadedFiles().size());
+        }
+
+        // Probes to hanging repository were cancelled once the other one answered
+        Assertions.assertFalse(transport.getHangingRequests().isEmpty());
+        Assertions.assertTrue(transport.getHangingRequests().stream().allMatch(CompletableFuture::isCancelled));
+    }
+
+    @Test
+    public void testAdaptiveRepositoryOrder() throws Exception {
+        TestRepository slow = new TestRepository(tempDir.resolve("slow"));
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1")
+                .artifact("test:b:1")
+                .artifact("test:c:1");
+        Path statsPath = tempDir.resolve("repositories.properties");
+
+        for (String coordinates : Arrays.asList("test:a:1", "test:c:1")) {
+            ExecutorService executorService = Executors.newCachedThreadPool();
+            TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService))
+                    .delay(TestTransport.repository(slow.getUri()), Duration.ofMillis(100));
+            try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString(coordinates))
+                    .withRepositories(Arrays.asList(slow.getUri(), repository.getUri()))
+                    .withAdaptiveRepositoryOrder(statsPath)
+                    .withTransport(transport)
+                    .build()) {
+                DependencyGraph graph = picoMaven.resolve().get();
+                Assertions.assertFalse(graph.getNodes().isEmpty());
+            }
+
+            List<TransportRequest> slowRequests = transport.getRequests(TestTransport.repository(slow.getUri()));
+            if (coordinates.equals("test:a:1")) {
+                // Configured order is used until slow repository turns out to be slow
+                Assertions.assertFalse(slowRequests.isEmpty());
+                Assertions.assertTrue(slowRequests.stream().allMatch(request -> request.getUrl().getPath().contains("/test/a/")));
+                Assertions.assertTrue(Files.exists(statsPath));
+            } else {
+                // Persisted statistics are used in later runs
+                Assertions.assertEquals(Collections.emptyList(), slowRequests);
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+import eu.mikroskeem.picomaven.artifact.Exclusion;
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import eu.mikroskeem.picomaven.transport.HttpUrlConnectionTransport;
+import eu.mikroskeem.picomaven.transport.Transport;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class ResolverTest {
+    @TempDir
+    Path tempDir;
+
+    private TestRepository repository;
+    private Path downloadDir;
+
+    @BeforeEach
+    public void setUp() {
+        repository = new TestRepository(tempDir.resolve("repository"));
+        downloadDir = tempDir.resolve("libraries");
+    }
+
+    @Test
+    public void testResolveDoesNotDownloadArtifacts() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1", "test:c:1")
+                .artifact("test:b:1", "test:d:1")
+                .artifact("test:c:1", "test:d:1")
+                .artifact("test:d:1");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+
+            List<String> nodes = graph.getNodes().stream()
+                    .map(node -> node.getDependency().getArtifactId())
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("a", "b", "c", "d"), nodes);
+            Assertions.assertSame(graph.getNodes().get(1).getChildren().get(0), graph.getNodes().get(2).getChildren().get(0));
+            Assertions.assertFalse(Files.exists(downloadDir.resolve("test/d/1/d-1.jar")));
+
+            Map<Dependency, CompletableFuture<DownloadResult>> downloads = picoMaven.download(graph);
+            DownloadResult result = downloads.get(graph.getRoots().get(0).getDependency()).get();
+            Assertions.assertTrue(result.isSuccess());
+            Assertions.assertEquals(4, result.getAllDownloadedFiles().size());
+            Assertions.assertTrue(Files.exists(downloadDir.resolve("test/d/1/d-1.jar")));
+        }
+    }
+
+    @Test
+    public void testCyclicGraphOnSingleThread() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1")
+                .artifact("test:b:1", "test:a:1");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, Executors.newSingleThreadExecutor(), Dependency.fromString("test:a:1")).build()) {
+            DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get();
+            Assertions.assertTrue(result.isSuccess());
+            Assertions.assertEquals(2, result.getAllDownloadedFiles().size());
+            Assertions.assertEquals(Collections.singletonList(Arrays.asList(
+                    Dependency.fromString("test:b:1"), Dependency.fromString("test:a:1"), Dependency.fromString("test:b:1")
+            )), result.getCycles());
+        }
+    }
+
+    @Test
+    public void testNearestVersionWins() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1", "test:c:2")
+                .artifact("test:b:1", "test:c:1")
+                .artifact("test:c:1")
+                .artifact("test:c:2");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            Assertions.assertEquals(3, graph.getNodes().size());
+            Assertions.assertNull(graph.getNode(Dependency.fromString("test:c:1")));
+
+            DownloadResult result = picoMaven.download(graph).values().iterator().next().get();
+            Assertions.assertEquals(3, result.getAllDownloadedFiles().size());
+            Assertions.assertFalse(Files.exists(downloadDir.resolve("test/c/1/c-1.jar")));
+        }
+    }
+
+    @Test
+    public void testHighestVersionWins() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1", "test:c:1.9")
+                .artifact("test:b:1", "test:c:1.10")
+                .artifact("test:c:1.9", "test:d:1")
+                .artifact("test:c:1.10")
+                .artifact("test:d:1");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1"))
+                .withConflictStrategy(ConflictStrategy.HIGHEST)
+                .build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            List<String> nodes = graph.getNodes().stream()
+                    .map(node -> node.getDependency().getArtifactId() + ':' + node.getDependency().getVersion())
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("a:1", "b:1", "c:1.10"), nodes);
+            Assertions.assertSame(graph.getRoots().get(0).getChildren().get(1), graph.getNodes().get(2));
+        }
+    }
+
+    @Test
+    public void testEffectiveModel() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifactWithPom("test:parent:1", "<packaging>pom</packaging>" +
+                        "<properties><c.version>2</c.version></properties>" +
+                        "<dependencyManagement><dependencies>" +
+                        "<dependency><groupId>test</groupId><artifactId>c</artifactId><version>${c.version}</version></dependency>" +
+                        "</dependencies></dependencyManagement>" +
+                        "<dependencies>" +
+                        "<dependency><groupId>${project.groupId}</groupId><artifactId>b</artifactId><version>${project.version}</version></dependency>" +
+                        "</dependencies>")
+                .artifactWithPom("test:a:1", "<parent><groupId>test</groupId><artifactId>parent</artifactId><version>1</version></parent>" +
+                        "<dependencies><dependency><groupId>test</groupId><artifactId>c</artifactId></dependency></dependencies>")
+                .artifact("test:b:1")
+                .artifact("test:c:2");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            List<String> nodes = graph.getNodes().stream()
+                    .map(node -> node.getDependency().getArtifactId() + ':' + node.getDependency().getVersion())
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("a:1", "c:2", "b:1"), nodes);
+            Assertions.assertTrue(Files.exists(downloadDir.resolve("test/parent/1/parent-1.pom.raw")));
+        }
+    }
+
+    @Test
+    public void testExclusions() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifactWithPom("test:a:1", "<dependencies><dependency>" +
+                        "<groupId>test</groupId><artifactId>b</artifactId><version>1</version>" +
+                        "<exclusions><exclusion><groupId>test</groupId><artifactId>d</artifactId></exclusion></exclusions>" +
+                        "</dependency></dependencies>")
+                .artifact("test:b:1", "test:c:1", "test:d:1")
+                .artifact("test:c:1", "test:d:1", "test:e:1")
+                .artifact("test:d:1")
+                .artifact("test:e:1");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1"))
+                .withExclusions(Collections.singletonList(Exclusion.fromString("test:e")))
+                .build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            List<String> nodes = graph.getNodes().stream()
+                    .map(node -> node.getDependency().getArtifactId())
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("a", "b", "c"), nodes);
+            Assertions.assertFalse(Files.exists(downloadDir.resolve("test/d")));
+            Assertions.assertFalse(Files.exists(downloadDir.resolve("test/e")));
+        }
+    }
+
+    @Test
+    public void testLockfile() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1")
+                .artifact("test:b:1");
+        Path lockfile = tempDir.resolve("picomaven.lock");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).withLockfile(lockfile).build()) {
+            Assertions.assertTrue(picoMaven.downloadAllArtifacts().get(Dependency.fromString("test:a:1")).get().isSuccess());
+        }
+        Assertions.assertTrue(Files.exists(lockfile));
+
+        // Warm start must not need the repository
+        Files.walk(tempDir.resolve("repository")).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).withLockfile(lockfile).build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            Assertions.assertTrue(graph.isLocked());
+            Assertions.assertEquals(2, graph.getNodes().size());
+
+            DownloadResult result = picoMaven.downloadAllArtifacts().get(Dependency.fromString("test:a:1")).get();
+            Assertions.assertEquals(2, result.getAllDownloadedFiles().size());
+        }
+
+        // Changed artifacts invalidate the lockfile, even if size stays the same
+        Path jar = downloadDir.resolve("test/b/1/b-1.jar");
+        FileTime modified = Files.getLastModifiedTime(jar);
+        byte[] content = Files.readAllBytes(jar);
+        content[0] ^= 1;
+        Files.write(jar, content);
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(modified.toMillis() + 1000));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).withLockfile(lockfile).build()) {
+            Assertions.assertFalse(picoMaven.resolve().get().isLocked());
+        }
+    }
+
+    @Test
+    public void testLockfileDigestVerification() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1");
+        Path lockfile = tempDir.resolve("picomaven.lock");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).withLockfile(lockfile).build()) {
+            Assertions.assertTrue(picoMaven.downloadAllArtifacts().get(Dependency.fromString("test:a:1")).get().isSuccess());
+        }
+
+        // Content change which keeps size and modification time is only noticed when digests are verified
+        Path jar = downloadDir.resolve("test/a/1/a-1.jar");
+        FileTime modified = Files.getLastModifiedTime(jar);
+        byte[] content = Files.readAllBytes(jar);
+        content[0] ^= 1;
+        Files.write(jar, content);
+        Files.setLastModifiedTime(jar, modified);
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).withLockfile(lockfile).build()) {
+            Assertions.assertTrue(picoMaven.resolve().get().isLocked());
+        }
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).withLockfile(lockfile, true).build()) {
+            Assertions.assertFalse(picoMaven.resolve().get().isLocked());
+        }
+    }
+
+    @Test
+    public void testWarmResolveUsesModelIndex() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifactWithPom("test:a:1", "<dependencies><dependency>" +
+                        "<groupId>test</groupId><artifactId>b</artifactId><version>1</version><optional>true</optional>" +
+                        "<exclusions><exclusion><groupId>*</groupId><artifactId>*</artifactId></exclusion></exclusions>" +
+                        "</dependency></dependencies>")
+                .artifact("test:b:1", "test:c:1")
+                .artifact("test:c:1");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).build()) {
+            Assertions.assertTrue(picoMaven.downloadAllArtifacts().get(Dependency.fromString("test:a:1")).get().isSuccess());
+        }
+        Assertions.assertTrue(Files.exists(downloadDir.resolve("test/a/1/a-1.pom.idx")));
+        Assertions.assertFalse(Files.exists(downloadDir.resolve("test/a/1/a-1.pom")));
+
+        Files.walk(tempDir.resolve("repository")).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            Assertions.assertEquals(2, graph.getNodes().size());
+            DependencyNode node = graph.getNodes().get(1);
+            Assertions.assertTrue(node.isOptional());
+            Assertions.assertTrue(node.getExclusions().contains(Exclusion.ALL));
+        }
+    }
+
+    @Test
+    public void testWarmResolveOfPomDependency() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifactWithPom("test:a:1", "<dependencies>" +
+                        "<dependency><groupId>test</groupId><artifactId>aggregate</artifactId><version>1</version><type>pom</type></dependency>" +
+                        "</dependencies>")
+                .artifact("test:aggregate:1", "test:b:1")
+                .artifact("test:b:1");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).build()) {
+            Assertions.assertTrue(picoMaven.downloadAllArtifacts().get(Dependency.fromString("test:a:1")).get().isSuccess());
+        }
+        Assertions.assertTrue(Files.exists(downloadDir.resolve("test/aggregate/1/aggregate-1.pom.idx")));
+
+        // POM dependencies have no jar, so their model index alone must be enough
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        TestTransport transport = new TestTransport(new HttpUrlConnectionTransport(executorService));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1")).withTransport(transport).build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            Assertions.assertEquals(3, graph.getNodes().size());
+        }
+        Assertions.assertEquals(Collections.emptyList(), transport.getRequests(TestTransport.path(".pom")));
+    }
+
+    @Test
+    public void testBomImportAndPomDependencies() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifactWithPom("test:bom:1", "<packaging>pom</packaging><dependencyManagement><dependencies>" +
+                        "<dependency><groupId>test</groupId><artifactId>c</artifactId><version>2</version></dependency>" +
+                        "</dependencies></dependencyManagement>")
+                .artifactWithPom("test:a:1", "<dependencyManagement><dependencies><dependency>" +
+                        "<groupId>test</groupId><artifactId>bom</artifactId><version>1</version><type>pom</type><scope>import</scope>" +
+                        "</dependency></dependencies></dependencyManagement>" +
+                        "<dependencies>" +
+                        "<dependency><groupId>test</groupId><artifactId>c</artifactId></dependency>" +
+                        "<dependency><groupId>test</groupId><artifactId>aggregate</artifactId><version>1</version><type>pom</type></dependency>" +
+                        "</dependencies>")
+                .artifact("test:aggregate:1", "test:d:1")
+                .artifact("test:c:2")
+                .artifact("test:d:1");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:1")).build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            List<String> nodes = graph.getNodes().stream()
+                    .map(node -> node.getDependency().getArtifactId() + ':' + node.getDependency().getVersion())
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("a:1", "c:2", "aggregate:1", "d:1"), nodes);
+
+            DownloadResult result = picoMaven.download(graph).get(graph.getRoots().get(0).getDependency()).get();
+            List<String> transitive = result.getTransitiveDependencies().stream()
+                    .map(res -> res.getDependency().getArtifactId())
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("c", "d"), transitive);
+            Assertions.assertEquals(3, result.getAllDownloadedFiles().size());
+            Assertions.assertFalse(Files.exists(downloadDir.resolve("test/aggregate/1/aggregate-1.jar")));
+            Assertions.assertFalse(Files.exists(downloadDir.resolve("test/bom/1/bom-1.jar")));
+        }
+    }
+
+    @Test
+    public void testVersionRanges() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:[1.0,2.0)", "test:c:RELEASE")
+                .metadata("test:b", "0.9", "1.0", "1.5", "2.0")
+                .metadata("test:c", "1", "2-SNAPSHOT")
+                .metadata("test:a", "1")
+                .artifact("test:b:1.5")
+                .artifact("test:c:1");
+
+        try (PicoMaven picoMaven = repository.builder(downloadDir, null, Dependency.fromString("test:a:[1,)"))
+                .withMetadataCacheTtl(Duration.ofHours(1))
+                .build()) {
+            DependencyGraph graph = picoMaven.resolve().get();
+            List<String> nodes = graph.getNodes().stream()
+                    .map(node -> node.getDependency().getArtifactId() + ':' + node.getDependency().getVersion())
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("a:1", "b:1.5", "c:1"), nodes);
+            Assertions.assertTrue(Files.exists(downloadDir.resolve("test/b/maven-metadata-picomaven.xml")));
+        }
+    }
+
+    @Test
+    public void testDownloadDuringResolution() throws Exception {
+        repository = new TestRepository(tempDir.resolve("repository"))
+                .artifact("test:a:1", "test:b:1")
+                .artifact("test:b:1");
+
+        // Root's POM is slow, its jar should be requested while waiting for it
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        Transport delegate = new HttpUrlConnectionTransport(executorService);
+        TestTransport transport = new TestTransport(delegate);
+        AtomicBoolean jarRequestedFirst = new AtomicBoolean(false);
+        transport.when(TestTransport.path("a-1.pom"), request -> TaskUtils.delay(Duration.ofMillis(300)).thenCompose(v -> {
+            jarRequestedFirst.set(transport.getRequests().stream().anyMatch(TestTransport.path("a-1.jar")));
+            return delegate.execute(request);
+        }));
+        try (PicoMaven picoMaven = repository.builder(downloadDir, executorService, Dependency.fromString("test:a:1"))
+                .withTransport(transport)
+                .build()) {
+            DownloadResult result = picoMaven.downloadAllArtifacts().values().iterator().next().get();
+            Assertions.assertTrue(result.isSuccess());
+            Assertions.assertEquals(2, result.getAllDownloadedFiles().size());
+        }
+
+        Assertions.assertTrue(jarRequestedFirst.get());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.artifact.Dependency;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Builds a file based Maven repository for tests
+ *
+ * @author Mark Vainomaa
+ */
+final class TestRepository {
+    private final Path root;
+
+    TestRepository(Path root) {
+        this.root = root;
+    }
+
+    URI getUri() {
+        return root.toUri();
+    }
+
+    /**
+     * Creates {@link PicoMaven} builder which downloads given dependencies from this repository
+     *
+     * @param downloadDir Download directory
+     * @param executorService Executor service, or {@code null} to use default one
+     * @param dependencies Dependencies to download
+     * @return PicoMaven builder
+     */
+    PicoMaven.Builder builder(Path downloadDir, ExecutorService executorService, Dependency... dependencies) {
+        return new PicoMaven.Builder()
+                .withDownloadPath(downloadDir)
+                .withRepositories(Collections.singletonList(getUri()))
+                .withDependencies(Arrays.asList(dependencies))
+                .withExecutorService(executorService)
+                .shouldCloseExecutorService(true);
+    }
+
+    /**
+     * Adds an artifact with given dependencies into this repository
+     *
+     * @param coordinates Artifact coordinates in {@code groupId:artifactId:version} format
+     * @param dependencies Dependencies in {@code groupId:artifactId:version} format
+     * @return this (for chaining)
+     */
+    TestRepository artifact(String coordinates, String... dependencies) throws IOException {
+        StringBuilder pom = new StringBuilder();
+        for (String dependency : dependencies) {
+            String[] parts = dependency.split(":");
+            pom.append("<dependency>")
+                    .append("<groupId>").append(parts[0]).append("</groupId>")
+                    .append("<artifactId>").append(parts[1]).append("</artifactId>")
+                    .append("<version>").append(parts[2]).append("</version>")
+                    .append("</dependency>");
+        }
+        return artifactWithPom(coordinates, "<dependencies>" + pom + "</dependencies>");
+    }
+
+    /**
+     * Adds an artifact with given raw POM body into this repository
+     *
+     * @param coordinates Artifact coordinates in {@code groupId:artifactId:version} format
+     * @param body POM contents inside {@code <project>} element, besides artifact coordinates
+     * @return this (for chaining)
+     */
+    TestRepository artifactWithPom(String coordinates, String body) throws IOException {
+        String[] parts = coordinates.split(":");
+        Path directory = root.resolve(parts[0].replace('.', '/')).resolve(parts[1]).resolve(parts[2]);
+        String name = parts[1] + '-' + parts[2];
+        Files.createDirectories(directory);
+
+        String pom = "<project><modelVersion>4.0.0</modelVersion>" +
+                "<groupId>" + parts[0] + "</groupId>" +
+                "<artifactId>" + parts[1] + "</artifactId>" +
+                "<version>" + parts[2] + "</version>" +
+                body +
+                "</project>";
+        Files.write(directory.resolve(name + ".pom"), pom.getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve(name + ".jar"), coordinates.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    /**
+     * Adds group level metadata of an artifact into this repository
+     *
+     * @param coordinates Artifact coordinates in {@code groupId:artifactId} format
+     * @param versions Available versions
+     * @return this (for chaining)
+     */
+    TestRepository metadata(String coordinates, String... versions) throws IOException {
+        String[] parts = coordinates.split(":");
+        Path directory = root.resolve(parts[0].replace('.', '/')).resolve(parts[1]);
+        Files.createDirectories(directory);
+
+        StringBuilder metadata = new StringBuilder("<metadata>")
+                .append("<groupId>").append(parts[0]).append("</groupId>")
+                .append("<artifactId>").append(parts[1]).append("</artifactId>")
+                .append("<versioning><versions>");
+        for (String version : versions) {
+            metadata.append("<version>").append(version).append("</version>");
+        }
+        metadata.append("</versions></versioning></metadata>");
+        Files.write(directory.resolve("maven-metadata.xml"), metadata.toString().getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import eu.mikroskeem.picomaven.transport.ForwardingTransportResponse;
+import eu.mikroskeem.picomaven.transport.Transport;
+import eu.mikroskeem.picomaven.transport.TransportRequest;
+import eu.mikroskeem.picomaven.transport.TransportResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Transport recording all requests and replying with scripted responses. Requests which are not scripted
+ * go to the delegate transport, unless a rule matches them.
+ *
+ * @author Mark Vainomaa
+ */
+final class TestTransport implements Transport {
+    private final ConcurrentLinkedQueue<Function<TransportRequest, CompletableFuture<TransportResponse>>> replies = new ConcurrentLinkedQueue<>();
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+    private final Map<String, List<String>> extraHeaders = new LinkedHashMap<>();
+    private final List<TransportRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<TransportResponse>> hangingRequests = Collections.synchronizedList(new ArrayList<>());
+    private Function<TransportRequest, CompletableFuture<TransportResponse>> fallback = request ->
+            CompletableFuture.completedFuture(new Response(request, 404, Collections.emptyMap(), ""));
+
+    TestTransport() {}
+
+    TestTransport(Transport delegate) {
+        this.fallback = delegate::execute;
+    }
+
+    static Predicate<TransportRequest> repository(URI repository) throws Exception {
+        String url = repository.toURL().toExternalForm();
+        return request -> request.getRepository() != null && url.equals(request.getRepository().toExternalForm());
+    }
+
+    static Predicate<TransportRequest> path(String suffix) {
+        return request -> request.getUrl().getPath().endsWith(suffix);
+    }
+
+    TestTransport reply(int statusCode, String body, String... headers) {
+        Map<String, List<String>> headerMap = new LinkedHashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            headerMap.put(headers[i], Collections.singletonList(headers[i + 1]));
+        }
+        replies.add(request -> CompletableFuture.completedFuture(new Response(request, statusCode, headerMap, body)));
+        return this;
+    }
+
+    TestTransport reply(Function<TransportRequest, CompletableFuture<TransportResponse>> reply) {
+        replies.add(reply);
+        return this;
+    }
+
+    TestTransport otherwise(Function<TransportRequest, CompletableFuture<TransportResponse>> fallback) {
+        this.fallback = fallback;
+        return this;
+    }
+
+    TestTransport when(Predicate<TransportRequest> matcher, Function<TransportRequest, CompletableFuture<TransportResponse>> reply) {
+        rules.add(new Rule(matcher, reply));
+        return this;
+    }
+
+    TestTransport hang(Predicate<TransportRequest> matcher) {
+        return when(matcher, request -> {
+            CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+            hangingRequests.add(future);
+            return future;
+        });
+    }
+
+    TestTransport fail(Predicate<TransportRequest> matcher, Throwable failure) {
+        return when(matcher, request -> TaskUtils.failedFuture(failure));
+    }
+
+    TestTransport delay(Predicate<TransportRequest> matcher, Duration delay) {
+        return when(matcher, request -> TaskUtils.delay(delay).thenCompose(v -> fallback.apply(request)));
+    }
+
+    TestTransport interruptOnce(Predicate<TransportRequest> matcher, IOException failure) {
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        return when(matcher, request -> fallback.apply(request).thenApply(response -> {
+            if (!response.isSuccess() || !interrupted.compareAndSet(false, true)) {
+                return response;
+            }
+            return new ForwardingTransportResponse(response) {
+                @Override
+                public InputStream getBody() {
+                    return new InputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            throw failure;
+                        }
+                    };
+                }
+            };
+        }));
+    }
+
+    TestTransport header(String name, String value) {
+        extraHeaders.put(name, Collections.singletonList(value));
+        return this;
+    }
+
+    List<TransportRequest> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    List<TransportRequest> getRequests(Predicate<TransportRequest> filter) {
+        return getRequests().stream().filter(filter).collect(Collectors.toList());
+    }
+
+    List<CompletableFuture<TransportResponse>> getHangingRequests() {
+        synchronized (hangingRequests) {
+            return new ArrayList<>(hangingRequests);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TransportResponse> execute(TransportRequest request) {
+        requests.add(request);
+        Function<TransportRequest, CompletableFuture<TransportResponse>> reply = replies.poll();
+        if (reply == null) {
+            reply = rules.stream()
+                    .filter(rule -> rule.matcher.test(request))
+                    .findFirst()
+                    .map(rule -> rule.reply)
+                    .orElse(fallback);
+        }
+        CompletableFuture<TransportResponse> future = reply.apply(request);
+        return extraHeaders.isEmpty() ? future : future.thenApply(response -> new ForwardingTransportResponse(response) {
+            @Override
+            public Map<String, List<String>> getHeaders() {
+                Map<String, List<String>> headers = new LinkedHashMap<>(super.getHeaders());
+                headers.putAll(extraHeaders);
+                return headers;
+            }
+        });
+    }
+
+    private static final class Rule {
+        private final Predicate<TransportRequest> matcher;
+        private final Function<TransportRequest, CompletableFuture<TransportResponse>> reply;
+
+        private Rule(Predicate<TransportRequest> matcher, Function<TransportRequest, CompletableFuture<TransportResponse>> reply) {
+            this.matcher = matcher;
+            this.reply = reply;
+        }
+    }
+
+    static final class Response implements TransportResponse {
+        private final TransportRequest request;
+        private final int statusCode;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+        private boolean closed = false;
+
+        Response(TransportRequest request, int statusCode, Map<String, List<String>> headers, String body) {
+            this.request = request;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public TransportRequest getRequest() {
+            return request;
+        }
+
+        @Override
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
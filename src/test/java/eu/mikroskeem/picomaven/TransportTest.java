@@ -0,0 +1,366 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import com.sun.net.httpserver.HttpServer;
+import eu.mikroskeem.picomaven.internal.TaskUtils;
+import eu.mikroskeem.picomaven.transport.CircuitBreakerTransport;
+import eu.mikroskeem.picomaven.transport.ConnectTimeoutException;
+import eu.mikroskeem.picomaven.transport.ConcurrencyLimitingTransport;
+import eu.mikroskeem.picomaven.transport.RepositoryHealth;
+import eu.mikroskeem.picomaven.transport.RepositoryUnavailableException;
+import eu.mikroskeem.picomaven.transport.RetryPolicy;
+import eu.mikroskeem.picomaven.transport.RetryingTransport;
+import eu.mikroskeem.picomaven.transport.Transport;
+import eu.mikroskeem.picomaven.transport.TransportRequest;
+import eu.mikroskeem.picomaven.transport.TransportResponse;
+import eu.mikroskeem.picomaven.transport.Transports;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class TransportTest {
+    private static final RetryPolicy FAST_RETRY = new RetryPolicy.Builder()
+            .withMaxAttempts(3)
+            .withBackoff(Duration.ofMillis(1), Duration.ofMillis(10), 2.0)
+            .build();
+
+    private static TransportRequest request(String path) throws Exception {
+        return new TransportRequest.Builder(new URL("https://repo.example.com/" + path))
+                .withRepository(new URL("https://repo.example.com/"))
+                .build();
+    }
+
+    private static HttpServer startServer() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.start();
+        return server;
+    }
+
+    private static URL url(HttpServer server, String path) throws Exception {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/" + path);
+    }
+
+    private static byte[] readBody(TransportResponse response) throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream is = response.getBody()) {
+            int read;
+            byte[] buffer = new byte[1024];
+            while ((read = is.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    @Test
+    public void testDefaultTransport() throws Exception {
+        byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+        HttpServer server = startServer();
+        server.createContext("/a.jar", exchange -> {
+            exchange.getResponseHeaders().add("X-Checksum-Sha1", "abc");
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            exchange.sendResponseHeaders(200, head ? -1 : data.length);
+            if (!head) {
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(data);
+                }
+            }
+            exchange.close();
+        });
+
+        // Runs with Java 11 layer of the multi-release jar too, where HttpClient based transport is the default
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        try (Transport transport = Transports.createDefault(executorService)) {
+            try (TransportResponse response = transport.execute(new TransportRequest.Builder(url(server, "a.jar")).build()).get()) {
+                Assertions.assertEquals(200, response.getStatusCode());
+                Assertions.assertEquals("abc", response.getHeader("X-Checksum-Sha1"));
+                Assertions.assertArrayEquals(data, readBody(response));
+            }
+
+            TransportRequest head = new TransportRequest.Builder(url(server, "a.jar"))
+                    .withMethod(TransportRequest.Method.HEAD)
+                    .build();
+            try (TransportResponse response = transport.execute(head).get()) {
+                Assertions.assertEquals(200, response.getStatusCode());
+            }
+
+            try (TransportResponse response = transport.execute(new TransportRequest.Builder(url(server, "b.jar")).build()).get()) {
+                Assertions.assertTrue(response.isNotFound());
+            }
+        } finally {
+            server.stop(0);
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        // Server sends headers and part of the body, then stalls
+        CountDownLatch stalled = new CountDownLatch(1);
+        HttpServer server = startServer();
+        server.createContext("/a.jar", exchange -> {
+            exchange.sendResponseHeaders(200, 8);
+            OutputStream os = exchange.getResponseBody();
+            os.write(new byte[4]);
+            os.flush();
+            try {
+                stalled.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            exchange.close();
+        });
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        try (Transport transport = Transports.createDefault(executorService)) {
+            TransportRequest request = new TransportRequest.Builder(url(server, "a.jar"))
+                    .withReadTimeout(Duration.ofSeconds(1))
+                    .build();
+            try (TransportResponse response = transport.execute(request).get()) {
+                Assertions.assertEquals(200, response.getStatusCode());
+                Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> Assertions.assertThrows(SocketTimeoutException.class, () -> readBody(response)));
+            }
+        } finally {
+            stalled.countDown();
+            server.stop(0);
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testSlowBodyWithinReadTimeout() throws Exception {
+        // Body takes longer than read timeout in total, but every single read finishes in time
+        HttpServer server = startServer();
+        server.createContext("/a.jar", exchange -> {
+            exchange.sendResponseHeaders(200, 4);
+            OutputStream os = exchange.getResponseBody();
+            for (int i = 0; i < 4; i++) {
+                os.write(i);
+                os.flush();
+                try {
+                    Thread.sleep(400);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            exchange.close();
+        });
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        try (Transport transport = Transports.createDefault(executorService)) {
+            TransportRequest request = new TransportRequest.Builder(url(server, "a.jar"))
+                    .withReadTimeout(Duration.ofSeconds(1))
+                    .build();
+            try (TransportResponse response = transport.execute(request).get()) {
+                Assertions.assertArrayEquals(new byte[] { 0, 1, 2, 3 }, readBody(response));
+            }
+        } finally {
+            server.stop(0);
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testRetryTransientFailures() throws Exception {
+        TestTransport upstream = new TestTransport()
+                .reply(503, "", "Retry-After", "0")
+                .reply(request -> {
+                    CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+                    future.completeExceptionally(new SocketTimeoutException("Read timed out"));
+                    return future;
+                })
+                .reply(200, "data");
+        Transport transport = new RetryingTransport(upstream, FAST_RETRY);
+
+        try (TransportResponse response = transport.execute(request("a.jar")).get()) {
+            Assertions.assertEquals(200, response.getStatusCode());
+        }
+        Assertions.assertEquals(3, upstream.getRequests().size());
+    }
+
+    @Test
+    public void testNoRetryOnNotFound() throws Exception {
+        TestTransport upstream = new TestTransport().reply(404, "");
+        Transport transport = new RetryingTransport(upstream, FAST_RETRY);
+
+        try (TransportResponse response = transport.execute(request("a.jar")).get()) {
+            Assertions.assertTrue(response.isNotFound());
+        }
+        Assertions.assertEquals(1, upstream.getRequests().size());
+    }
+
+    @Test
+    public void testRetryGivesUp() throws Exception {
+        TestTransport upstream = new TestTransport()
+                .reply(429, "", "Retry-After", "3600")
+                .reply(200, "data");
+        Transport transport = new RetryingTransport(upstream, FAST_RETRY);
+
+        // Server asked to wait way too long
+        try (TransportResponse response = transport.execute(request("a.jar")).get()) {
+            Assertions.assertEquals(429, response.getStatusCode());
+        }
+        Assertions.assertEquals(1, upstream.getRequests().size());
+
+        upstream = new TestTransport().otherwise(request -> CompletableFuture.completedFuture(
+                new TestTransport.Response(request, 500, Collections.emptyMap(), "")));
+        transport = new RetryingTransport(upstream, FAST_RETRY);
+        try (TransportResponse response = transport.execute(request("a.jar")).get()) {
+            Assertions.assertEquals(500, response.getStatusCode());
+        }
+        Assertions.assertEquals(3, upstream.getRequests().size());
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        List<CompletableFuture<TransportResponse>> pending = Collections.synchronizedList(new ArrayList<>());
+        TestTransport upstream = new TestTransport().otherwise(request -> {
+            CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+        Transport transport = new ConcurrencyLimitingTransport(upstream, 0, 2);
+
+        List<CompletableFuture<TransportResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(transport.execute(request(i + ".jar")));
+        }
+        Assertions.assertEquals(2, upstream.getRequests().size());
+
+        // Cancelled requests give up their place in the queue
+        futures.get(2).cancel(false);
+        pending.get(0).complete(new TestTransport.Response(upstream.getRequests().get(0), 200, Collections.emptyMap(), ""));
+        Assertions.assertEquals(2, upstream.getRequests().size());
+
+        // Request is in flight until its response is closed
+        futures.get(0).get().close();
+        Assertions.assertEquals(3, upstream.getRequests().size());
+        Assertions.assertEquals("/3.jar", upstream.getRequests().get(2).getUrl().getPath());
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        TestTransport upstream = new TestTransport()
+                .reply(request -> TaskUtils.failedFuture(new ConnectException("Connection refused")))
+                .reply(request -> TaskUtils.failedFuture(new ConnectException("Connection refused")))
+                .reply(200, "");
+        CircuitBreakerTransport transport = new CircuitBreakerTransport(upstream, 2, Duration.ofMillis(100));
+        URL repository = request("").getRepository();
+
+        for (int i = 0; i < 2; i++) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> transport.execute(request("a.jar")).get());
+            Assertions.assertTrue(e.getCause() instanceof ConnectException);
+        }
+        Assertions.assertEquals(RepositoryHealth.State.OPEN, transport.getHealth(repository).getState());
+
+        // Repository is skipped during cooldown
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> transport.execute(request("a.jar")).get());
+        Assertions.assertTrue(e.getCause() instanceof RepositoryUnavailableException);
+        Assertions.assertEquals(2, upstream.getRequests().size());
+
+        // Successful probe closes the breaker
+        Thread.sleep(150);
+        try (TransportResponse response = transport.execute(request("a.jar")).get()) {
+            Assertions.assertEquals(200, response.getStatusCode());
+        }
+        RepositoryHealth health = transport.getHealth(repository);
+        Assertions.assertEquals(RepositoryHealth.State.CLOSED, health.getState());
+        Assertions.assertEquals(0, health.getConsecutiveFailures());
+        Assertions.assertEquals(2, health.getTotalFailures());
+    }
+
+    @Test
+    public void testCircuitBreakerIgnoresReadTimeouts() throws Exception {
+        TestTransport upstream = new TestTransport()
+                .reply(request -> TaskUtils.failedFuture(new SocketTimeoutException("Read timed out")))
+                .reply(request -> TaskUtils.failedFuture(new SocketTimeoutException("Read timed out")))
+                .reply(request -> TaskUtils.failedFuture(new ConnectTimeoutException("Connect timed out")))
+                .reply(request -> TaskUtils.failedFuture(new ConnectTimeoutException("Connect timed out")));
+        CircuitBreakerTransport transport = new CircuitBreakerTransport(upstream, 2, Duration.ofSeconds(30));
+        URL repository = request("").getRepository();
+
+        // Slow responses don't mean that repository is down
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThrows(ExecutionException.class, () -> transport.execute(request("a.jar")).get());
+        }
+        Assertions.assertEquals(RepositoryHealth.State.CLOSED, transport.getHealth(repository).getState());
+
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThrows(ExecutionException.class, () -> transport.execute(request("a.jar")).get());
+        }
+        Assertions.assertEquals(RepositoryHealth.State.OPEN, transport.getHealth(repository).getState());
+    }
+
+    @Test
+    public void testRetryLeavesConnectionFailuresToCircuitBreaker() throws Exception {
+        TestTransport upstream = new TestTransport()
+                .fail(request -> true, new ConnectTimeoutException("Connect timed out"));
+        CircuitBreakerTransport breaker = new CircuitBreakerTransport(upstream, 3, Duration.ofSeconds(30));
+        Transport transport = new RetryingTransport(breaker, FAST_RETRY, Collections.emptyMap(), false);
+        URL repository = request("").getRepository();
+
+        // Every request pays the connect timeout once, and breaker opens after threshold of requests
+        for (int i = 1; i <= 3; i++) {
+            Assertions.assertThrows(ExecutionException.class, () -> transport.execute(request("a.jar")).get());
+            Assertions.assertEquals(i, upstream.getRequests().size());
+            Assertions.assertEquals(i < 3 ? RepositoryHealth.State.CLOSED : RepositoryHealth.State.OPEN,
+                    breaker.getHealth(repository).getState());
+        }
+
+        // Read timeouts are not counted by the breaker, so they are still retried
+        TestTransport slow = new TestTransport()
+                .reply(request -> TaskUtils.failedFuture(new SocketTimeoutException("Read timed out")))
+                .reply(200, "data");
+        Transport retrying = new RetryingTransport(new CircuitBreakerTransport(slow, 3, Duration.ofSeconds(30)),
+                FAST_RETRY, Collections.emptyMap(), false);
+        try (TransportResponse response = retrying.execute(request("a.jar")).get()) {
+            Assertions.assertEquals(200, response.getStatusCode());
+        }
+        Assertions.assertEquals(2, slow.getRequests().size());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of project PicoMaven, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2017-2019 Mark Vainomaa <mikroskeem@mikroskeem.eu>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package eu.mikroskeem.picomaven;
+
+import eu.mikroskeem.picomaven.internal.VersionRange;
+import eu.mikroskeem.picomaven.internal.VersionUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Mark Vainomaa
+ */
+public class VersionUtilsTest {
+    @Test
+    public void testVersionOrdering() {
+        String[] versions = {"1.0-alpha1", "1.0-beta-2", "1.0-rc1", "1.0-SNAPSHOT", "1.0", "1.0-sp1", "1.0.1", "1.9", "1.10", "2"};
+        for (int i = 0; i < versions.length - 1; i++) {
+            Assertions.assertTrue(VersionUtils.compare(versions[i], versions[i + 1]) < 0, versions[i] + " < " + versions[i + 1]);
+            Assertions.assertTrue(VersionUtils.compare(versions[i + 1], versions[i]) > 0, versions[i + 1] + " > " + versions[i]);
+        }
+    }
+
+    @Test
+    public void testEqualVersions() {
+        Assertions.assertEquals(0, VersionUtils.compare("1", "1.0.0"));
+        Assertions.assertEquals(0, VersionUtils.compare("1.0-final", "1"));
+        Assertions.assertEquals(0, VersionUtils.compare("1.0-SNAPSHOT", "1-snapshot"));
+        Assertions.assertEquals(0, VersionUtils.compare("2.0a1", "2.0-alpha-1"));
+    }
+
+    @Test
+    public void testVersionRanges() {
+        VersionRange range = VersionRange.parse("[1.0,2.0),(2.5,]");
+        Assertions.assertNotNull(range);
+        Assertions.assertTrue(range.contains("1.0"));
+        Assertions.assertTrue(range.contains("1.9.9"));
+        Assertions.assertFalse(range.contains("2.0"));
+        Assertions.assertFalse(range.contains("2.5"));
+        Assertions.assertTrue(range.contains("3"));
+        Assertions.assertTrue(VersionRange.parse("[1.2]").contains("1.2.0"));
+        Assertions.assertFalse(VersionRange.parse("(,1.2)").contains("1.2"));
+        Assertions.assertNull(VersionRange.parse("(1.2)"));
+        Assertions.assertNull(VersionRange.parse("[1.0,2.0"));
+    }
+}